@@ -1,14 +1,21 @@
 package ru.practicum.shareit.booking;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.booking.dto.BookingBatchResultDto;
+import ru.practicum.shareit.booking.dto.BookingCursor;
 import ru.practicum.shareit.booking.dto.BookingDtoIn;
 import ru.practicum.shareit.booking.dto.BookingDtoOut;
+import ru.practicum.shareit.booking.dto.BookingStatusDto;
 
 import java.util.Collection;
+import java.util.List;
 
 @RestController
+@Timed(histogram = true)
 @RequestMapping
 @RequiredArgsConstructor
 public class BookingController {
@@ -20,11 +27,36 @@ public class BookingController {
         return ResponseEntity.ok().body(bookingService.createBooking(bookingDtoIn, userId));
     }
 
+    @PostMapping("/bookings/batch")
+    public ResponseEntity<List<BookingBatchResultDto>> createBookings(@RequestBody List<BookingDtoIn> bookingDtoIns,
+                                                                      @RequestHeader("X-Sharer-User-Id") int userId,
+                                                                      @RequestParam(defaultValue = "false") boolean allOrNothing) {
+        return ResponseEntity.ok().body(bookingService.createBookings(bookingDtoIns, userId, allOrNothing));
+    }
+
     @PatchMapping("/bookings/{bookingId}")
     public ResponseEntity<BookingDtoOut> changeStatus(@RequestHeader("X-Sharer-User-Id") int userId,
                                                       @PathVariable Integer bookingId,
                                                       @RequestParam boolean approved) {
-        return ResponseEntity.ok().body(bookingService.changeStatus(userId, bookingId, approved));
+        BookingDtoOut booking = bookingService.changeStatus(userId, bookingId, approved);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (booking.getRejectedCount() != null) {
+            response.header("X-Rejected-Count", String.valueOf(booking.getRejectedCount()));
+        }
+        return response.body(booking);
+    }
+
+    @PatchMapping("/bookings/status")
+    public ResponseEntity<List<BookingDtoOut>> changeStatuses(@RequestHeader("X-Sharer-User-Id") int userId,
+                                                              @RequestBody List<BookingStatusDto> statuses) {
+        List<BookingDtoOut> bookings = bookingService.changeStatuses(userId, statuses);
+        int rejected = 0;
+        for (BookingDtoOut booking : bookings) {
+            if (booking.getRejectedCount() != null) {
+                rejected += booking.getRejectedCount();
+            }
+        }
+        return ResponseEntity.ok().header("X-Rejected-Count", String.valueOf(rejected)).body(bookings);
     }
 
     @GetMapping("/bookings/{bookingId}")
@@ -37,15 +69,33 @@ public class BookingController {
     public ResponseEntity<Collection<BookingDtoOut>> getAllForBooker(@RequestHeader("X-Sharer-User-Id") int userId,
                                                                      @RequestParam(defaultValue = "ALL", required = false) String state,
                                                                      @RequestParam(required = false) Integer from,
-                                                                     @RequestParam(required = false) Integer size) {
-        return ResponseEntity.ok().body(bookingService.getAllForBooker(userId, state, from, size));
+                                                                     @RequestParam(required = false) Integer size,
+                                                                     @RequestParam(required = false) String after) {
+        if (after != null) {
+            return withNextCursor(bookingService.getAllForBookerAfter(userId, state, after, size));
+        }
+        return withNextCursor(bookingService.getAllForBooker(userId, state, from, size));
     }
 
     @GetMapping("/bookings/owner")
     public ResponseEntity<Collection<BookingDtoOut>> getAllForOwner(@RequestHeader("X-Sharer-User-Id") int userId,
                                                                     @RequestParam(defaultValue = "ALL", required = false) String state,
                                                                     @RequestParam(required = false) Integer from,
-                                                                    @RequestParam(required = false) Integer size) {
-        return ResponseEntity.ok().body(bookingService.getAllForOwner(userId, state, from, size));
+                                                                    @RequestParam(required = false) Integer size,
+                                                                    @RequestParam(required = false) String after) {
+        if (after != null) {
+            return withNextCursor(bookingService.getAllForOwnerAfter(userId, state, after, size));
+        }
+        return withNextCursor(bookingService.getAllForOwner(userId, state, from, size));
+    }
+
+    private ResponseEntity<Collection<BookingDtoOut>> withNextCursor(Slice<BookingDtoOut> bookings) {
+        // Если есть следующая страница, отдаём курсор для её запроса
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().header("X-Has-More", String.valueOf(bookings.hasNext()));
+        if (bookings.hasNext()) {
+            List<BookingDtoOut> content = bookings.getContent();
+            response.header("X-Next-Cursor", BookingCursor.of(content.get(content.size() - 1)).toToken());
+        }
+        return response.body(bookings.getContent());
     }
 }
@@ -0,0 +1,202 @@
+package ru.practicum.shareit.booking;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.booking.dto.BookingDtoForAvailability;
+import ru.practicum.shareit.booking.dto.BookingDtoForInterval;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.util.InClauseBatches;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Подтверждённые интервалы бронирований по вещам. Закончившиеся интервалы удаляются из памяти - пересечения
+// с прошлым проверяются запросом к базе, а вещи, к которым долго не обращались, выгружаются целиком
+@Component
+public class BookingIntervalIndex {
+    private final BookingRepository bookingRepository;
+    private final long idleTtlNanos;
+    private final int inClauseBatchSize;
+    private final Map<Integer, ItemIntervals> approvedIntervals = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+    public BookingIntervalIndex(BookingRepository bookingRepository,
+                                @Value("${shareit.booking-intervals.idle-ttl:30m}") Duration idleTtl,
+                                @Value("${shareit.in-clause-batch-size:500}") int inClauseBatchSize) {
+        this.bookingRepository = bookingRepository;
+        this.idleTtlNanos = idleTtl.toNanos();
+        this.inClauseBatchSize = inClauseBatchSize;
+    }
+
+    public boolean hasOverlap(int itemId, LocalDateTime start, LocalDateTime end) {
+        ItemIntervals intervals = getIntervals(itemId);
+        synchronized (intervals) {
+            if (intervals.overlaps(start, end)) {
+                return true;
+            }
+            if (!start.isBefore(intervals.prunedBefore)) {
+                return false;
+            }
+        }
+        return existsInDatabase(itemId, start, end);
+    }
+
+    public boolean tryAdd(int itemId, LocalDateTime start, LocalDateTime end) {
+        ItemIntervals intervals = getIntervals(itemId);
+        synchronized (intervals) {
+            if (intervals.overlaps(start, end)) {
+                return false;
+            }
+            // Бронирование, начавшееся раньше удалённых интервалов, проверяем по базе. Изменения бронирований
+            // одной вещи выполняются под её блокировкой, поэтому между проверкой и добавлением их никто не подтвердит
+            if (start.isBefore(intervals.prunedBefore) && existsInDatabase(itemId, start, end)) {
+                return false;
+            }
+            intervals.intervals.put(start, end);
+        }
+        removeOnRollback(itemId, start);
+        return true;
+    }
+
+    // Интервалы вещей пакета, которых ещё нет в памяти, загружаются запросами IN, а не по одной вещи
+    public void preload(Collection<Integer> itemIds) {
+        List<Integer> missing = new ArrayList<>();
+        for (Integer itemId : itemIds) {
+            if (!approvedIntervals.containsKey(itemId)) {
+                missing.add(itemId);
+            }
+        }
+        load(missing).forEach(approvedIntervals::putIfAbsent);
+    }
+
+    // Подтверждения могли зафиксировать другие экземпляры приложения: под блокировкой строк вещей
+    // интервалы перечитываются из базы
+    public void reload(Collection<Integer> itemIds) {
+        approvedIntervals.putAll(load(new ArrayList<>(itemIds)));
+    }
+
+    int trackedItems() {
+        return approvedIntervals.size();
+    }
+
+    private ItemIntervals getIntervals(int itemId) {
+        long now = System.nanoTime();
+        sweep(now);
+        ItemIntervals intervals = approvedIntervals.get(itemId);
+        if (intervals == null) {
+            // Загрузка идёт вне computeIfAbsent, чтобы запрос к базе не блокировал другие вещи той же корзины
+            ItemIntervals loaded = load(itemId);
+            intervals = approvedIntervals.putIfAbsent(itemId, loaded);
+            if (intervals == null) {
+                intervals = loaded;
+            }
+        }
+        intervals.lastAccess = now;
+        synchronized (intervals) {
+            intervals.prune(LocalDateTime.now());
+        }
+        return intervals;
+    }
+
+    private ItemIntervals load(int itemId) {
+        ItemIntervals loaded = new ItemIntervals();
+        for (BookingDtoForInterval booking
+                : bookingRepository.findAllByItemIdAndStatusOrderByStartAsc(itemId, Status.APPROVED)) {
+            loaded.append(booking);
+        }
+        return loaded;
+    }
+
+    // Читаются только ещё не закончившиеся интервалы, а более ранние бронирования проверяются по базе,
+    // как после prune
+    private Map<Integer, ItemIntervals> load(List<Integer> itemIds) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Integer, ItemIntervals> loaded = new HashMap<>();
+        for (Integer itemId : itemIds) {
+            ItemIntervals intervals = new ItemIntervals();
+            intervals.prunedBefore = now;
+            loaded.put(itemId, intervals);
+        }
+        for (List<Integer> batch : InClauseBatches.partition(itemIds, inClauseBatchSize)) {
+            for (BookingDtoForAvailability booking
+                    : bookingRepository.findAllIntervalsForItems(batch, Status.APPROVED, now)) {
+                loaded.get(booking.getItemId()).append(booking);
+            }
+        }
+        return loaded;
+    }
+
+    private boolean existsInDatabase(int itemId, LocalDateTime start, LocalDateTime end) {
+        return bookingRepository.existsByItemIdAndStatusAndStartIsBeforeAndEndIsAfter(itemId, Status.APPROVED, end,
+                start);
+    }
+
+    private void sweep(long now) {
+        long previous = lastSweep.get();
+        if (now - previous >= idleTtlNanos && lastSweep.compareAndSet(previous, now)) {
+            approvedIntervals.values().removeIf(intervals -> now - intervals.lastAccess >= idleTtlNanos);
+        }
+    }
+
+    private void removeOnRollback(int itemId, LocalDateTime start) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    ItemIntervals intervals = approvedIntervals.get(itemId);
+                    if (intervals != null) {
+                        synchronized (intervals) {
+                            intervals.intervals.remove(start);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private static class ItemIntervals {
+        private final NavigableMap<LocalDateTime, LocalDateTime> intervals = new TreeMap<>();
+        // Все интервалы, закончившиеся не позже этого момента, удалены
+        private LocalDateTime prunedBefore = LocalDateTime.MIN;
+        private volatile long lastAccess = System.nanoTime();
+
+        // Бронирования приходят упорядоченными по началу
+        void append(BookingDtoForInterval booking) {
+            Map.Entry<LocalDateTime, LocalDateTime> last = intervals.lastEntry();
+            if (last != null && booking.getStart().isBefore(last.getValue())) {
+                // Пересекающиеся подтверждённые бронирования, созданные до появления проверки, объединяем
+                if (booking.getEnd().isAfter(last.getValue())) {
+                    intervals.put(last.getKey(), booking.getEnd());
+                }
+            } else {
+                intervals.put(booking.getStart(), booking.getEnd());
+            }
+        }
+
+        boolean overlaps(LocalDateTime start, LocalDateTime end) {
+            Map.Entry<LocalDateTime, LocalDateTime> candidate = intervals.lowerEntry(end);
+            return candidate != null && candidate.getValue().isAfter(start);
+        }
+
+        // Интервалы не пересекаются, поэтому по началу упорядочены и их концы
+        void prune(LocalDateTime now) {
+            while (!intervals.isEmpty() && !intervals.firstEntry().getValue().isAfter(now)) {
+                prunedBefore = intervals.pollFirstEntry().getValue();
+            }
+        }
+    }
+}
@@ -12,10 +12,12 @@ import java.util.List;
 
 @Mapper(componentModel = "spring")
 public interface BookingMapper {
+    @Mapping(target = "rejectedCount", ignore = true)
     BookingDtoOut toBookingDtoOut(Booking booking);
 
     List<BookingDtoOut> toBookingDtoOut(List<Booking> bookings);
 
     @Mapping(target = "id", source = "bookingDtoIn.id")
+    @Mapping(target = "version", ignore = true)
     Booking toBooking(BookingDtoIn bookingDtoIn, UserDto booker, Item item);
 }
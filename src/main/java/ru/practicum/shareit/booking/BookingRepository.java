@@ -1,60 +1,165 @@
 package ru.practicum.shareit.booking;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.practicum.shareit.booking.dto.BookingCountDto;
+import ru.practicum.shareit.booking.dto.BookingDtoForAvailability;
+import ru.practicum.shareit.booking.dto.BookingDtoForInterval;
 import ru.practicum.shareit.booking.dto.BookingDtoForItem;
+import ru.practicum.shareit.booking.dto.BookingDtoForOwnerItems;
+import ru.practicum.shareit.booking.dto.BookingDtoForStatusChange;
+import ru.practicum.shareit.booking.dto.BookingDtoOut;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.Status;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface BookingRepository extends JpaRepository<Booking, Integer> {
-    List<Booking> findAllByBookerIdOrderByEndDesc(int userId);
+    // Списки бронирований читаются проекцией в BookingDtoOut одним запросом с вещью и бронирующим
+    String DTO_OUT = "select new ru.practicum.shareit.booking.dto.BookingDtoOut(b.id, b.start, b.end, " +
+            "i.id, i.name, i.description, i.available, u.id, u.name, u.email, b.status) " +
+            "from Booking b join b.item i join b.booker u ";
+    String BY_BOOKER = DTO_OUT + "where b.booker.id = ?1 ";
+    String BY_OWNER = DTO_OUT + "where i.owner.id = ?1 ";
+    String AFTER_CURSOR = "and (b.end < ?2 or (b.end = ?2 and b.id < ?3)) ";
+    String SEEK_ORDER = "order by b.end desc, b.id desc";
 
-    List<Booking> findAllByBookerIdAndStatusOrderByEndDesc(int userId, Status status);
+    // Связи ленивые: бронирование для ответа загружается вместе с вещью и бронирующим одним запросом
+    @Override
+    @EntityGraph(attributePaths = {"item", "booker"})
+    Optional<Booking> findById(Integer id);
 
-    List<Booking> findAllByBookerIdAndEndIsBeforeOrderByEndDesc(int userId, LocalDateTime dateTime);
+    @Query("select b.item.id from Booking b where b.id = ?1")
+    Optional<Integer> findItemIdById(int bookingId);
 
-    List<Booking> findAllByBookerIdAndStartIsAfterOrderByEndDesc(int userId, LocalDateTime dateTime);
+    @Query(DTO_OUT + "where b.id in ?1")
+    List<BookingDtoOut> findAllDtoByIdIn(Collection<Integer> bookingIds);
 
-    List<Booking> findAllByBookerIdAndEndIsAfterAndStartIsBeforeOrderByEndDesc(int userId, LocalDateTime dateTime1, LocalDateTime dateTime2);
+    // Бронирования для ответа владельца вместе с id владельца вещи: внешние ключи читаются без загрузки связей
+    @Query("select b.id as id, b.booker.id as bookerId, b.item.id as itemId, i.owner.id as ownerId, " +
+            "b.start as start, b.end as end, b.status as status from Booking b join b.item i where b.id in ?1")
+    List<BookingDtoForStatusChange> findAllForStatusChange(Collection<Integer> bookingIds);
 
-    Page<Booking> findAllByBookerId(int userId, Pageable pageable);
+    @Query(BY_BOOKER + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByBookerId(int userId, Pageable pageable);
 
-    Page<Booking> findAllByBookerIdAndStatus(int userId, Status status, Pageable pageable);
+    @Query(BY_BOOKER + "and b.status = ?2 " + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByBookerIdAndStatus(int userId, Status status, Pageable pageable);
 
-    Page<Booking> findAllByBookerIdAndEndIsBefore(int userId, LocalDateTime dateTime, Pageable pageable);
+    @Query(BY_BOOKER + "and b.end < ?2 " + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByBookerIdAndEndIsBefore(int userId, LocalDateTime dateTime, Pageable pageable);
 
-    Page<Booking> findAllByBookerIdAndStartIsAfter(int userId, LocalDateTime dateTime, Pageable pageable);
+    @Query(BY_BOOKER + "and b.start > ?2 " + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByBookerIdAndStartIsAfter(int userId, LocalDateTime dateTime, Pageable pageable);
 
-    Page<Booking> findAllByBookerIdAndEndIsAfterAndStartIsBefore(int userId, LocalDateTime dateTime1, LocalDateTime dateTime2, Pageable pageable);
+    @Query(BY_BOOKER + "and b.end > ?2 and b.start < ?3 " + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByBookerIdAndEndIsAfterAndStartIsBefore(int userId, LocalDateTime dateTime1, LocalDateTime dateTime2, Pageable pageable);
 
-    List<Booking> findAllByItemOwnerIdOrderByEndDesc(int userId);
+    @Query(BY_BOOKER + AFTER_CURSOR + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByBookerIdAfterCursor(int userId, LocalDateTime end, int id, Pageable pageable);
 
-    List<Booking> findAllByItemOwnerIdAndStatusOrderByEndDesc(int userId, Status status);
+    @Query(BY_BOOKER + AFTER_CURSOR + "and b.status = ?4 " + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByBookerIdAndStatusAfterCursor(int userId, LocalDateTime end, int id, Status status, Pageable pageable);
 
-    List<Booking> findAllByItemOwnerIdAndEndIsBeforeOrderByEndDesc(int userId, LocalDateTime dateTime);
+    @Query(BY_BOOKER + AFTER_CURSOR + "and b.end < ?4 " + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByBookerIdAndEndIsBeforeAfterCursor(int userId, LocalDateTime end, int id, LocalDateTime dateTime, Pageable pageable);
 
-    List<Booking> findAllByItemOwnerIdAndStartIsAfterOrderByEndDesc(int userId, LocalDateTime dateTime);
+    @Query(BY_BOOKER + AFTER_CURSOR + "and b.start > ?4 " + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByBookerIdAndStartIsAfterAfterCursor(int userId, LocalDateTime end, int id, LocalDateTime dateTime, Pageable pageable);
 
-    List<Booking> findAllByItemOwnerIdAndEndIsAfterAndStartIsBeforeOrderByEndDesc(int userId, LocalDateTime dateTime1, LocalDateTime dateTime2);
+    @Query(BY_BOOKER + AFTER_CURSOR + "and b.end > ?4 and b.start < ?4 " + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByBookerIdCurrentAfterCursor(int userId, LocalDateTime end, int id, LocalDateTime dateTime, Pageable pageable);
 
-    Page<Booking> findAllByItemOwnerId(int userId, Pageable pageable);
+    @Query(BY_OWNER + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByItemOwnerId(int userId, Pageable pageable);
 
-    Page<Booking> findAllByItemOwnerIdAndStatus(int userId, Status status, Pageable pageable);
+    @Query(BY_OWNER + "and b.status = ?2 " + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByItemOwnerIdAndStatus(int userId, Status status, Pageable pageable);
 
-    Page<Booking> findAllByItemOwnerIdAndEndIsBefore(int userId, LocalDateTime dateTime, Pageable pageable);
+    @Query(BY_OWNER + "and b.end < ?2 " + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByItemOwnerIdAndEndIsBefore(int userId, LocalDateTime dateTime, Pageable pageable);
 
-    Page<Booking> findAllByItemOwnerIdAndStartIsAfter(int userId, LocalDateTime dateTime, Pageable pageable);
+    @Query(BY_OWNER + "and b.start > ?2 " + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByItemOwnerIdAndStartIsAfter(int userId, LocalDateTime dateTime, Pageable pageable);
 
-    Page<Booking> findAllByItemOwnerIdAndEndIsAfterAndStartIsBefore(int userId, LocalDateTime dateTime1, LocalDateTime dateTime2, Pageable pageable);
+    @Query(BY_OWNER + "and b.end > ?2 and b.start < ?3 " + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByItemOwnerIdAndEndIsAfterAndStartIsBefore(int userId, LocalDateTime dateTime1, LocalDateTime dateTime2, Pageable pageable);
+
+    @Query(BY_OWNER + AFTER_CURSOR + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByItemOwnerIdAfterCursor(int userId, LocalDateTime end, int id, Pageable pageable);
+
+    @Query(BY_OWNER + AFTER_CURSOR + "and b.status = ?4 " + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByItemOwnerIdAndStatusAfterCursor(int userId, LocalDateTime end, int id, Status status, Pageable pageable);
+
+    @Query(BY_OWNER + AFTER_CURSOR + "and b.end < ?4 " + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByItemOwnerIdAndEndIsBeforeAfterCursor(int userId, LocalDateTime end, int id, LocalDateTime dateTime, Pageable pageable);
+
+    @Query(BY_OWNER + AFTER_CURSOR + "and b.start > ?4 " + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByItemOwnerIdAndStartIsAfterAfterCursor(int userId, LocalDateTime end, int id, LocalDateTime dateTime, Pageable pageable);
+
+    @Query(BY_OWNER + AFTER_CURSOR + "and b.end > ?4 and b.start < ?4 " + SEEK_ORDER)
+    Slice<BookingDtoOut> findAllByItemOwnerIdCurrentAfterCursor(int userId, LocalDateTime end, int id, LocalDateTime dateTime, Pageable pageable);
 
     BookingDtoForItem findFirst1ByItemIdAndStartIsAfterAndStatusOrderByStartAsc(int itemId, LocalDateTime date, Status status);
 
     BookingDtoForItem findFirst1ByItemIdAndStartIsBeforeAndStatusOrderByStartDesc(int itemId, LocalDateTime date, Status status);
 
+    @EntityGraph(attributePaths = {"item", "booker"})
     Optional<Booking> findFirst1ByBookerIdAndItemIdOrderByEndAsc(int userId, int itemId);
+
+    @Query("select b.start as start, b.end as end from Booking b where b.item.id = ?1 and b.status = ?2 order by b.start")
+    List<BookingDtoForInterval> findAllByItemIdAndStatusOrderByStartAsc(int itemId, Status status);
+
+    @Query("select b.item.id as itemId, b.start as start, b.end as end from Booking b " +
+            "where b.item.id in ?1 and b.status = ?2 and b.end > ?3 order by b.item.id, b.start")
+    List<BookingDtoForAvailability> findAllIntervalsForItems(Collection<Integer> itemIds, Status status,
+                                                             LocalDateTime now);
+
+    // Переводит из status в newStatus только бронирования, статус которых не успели изменить
+    @Modifying
+    @Query("update Booking b set b.status = ?3, b.version = b.version + 1 where b.id in ?1 and b.status = ?2")
+    int updateStatus(Collection<Integer> bookingIds, Status status, Status newStatus);
+
+    // Бронирования вещи в статусе status, пересекающиеся с интервалом, кроме excludedId, переводятся в newStatus.
+    // Версия увеличивается, чтобы параллельное изменение тех же бронирований не прошло проверку версии
+    @Modifying
+    @Query("update Booking b set b.status = ?6, b.version = b.version + 1 " +
+            "where b.item.id = ?1 and b.status = ?5 and b.start < ?3 and b.end > ?2 and b.id <> ?4")
+    int updateStatusOfOverlapping(int itemId, LocalDateTime start, LocalDateTime end, int excludedId, Status status,
+                                  Status newStatus);
+
+    boolean existsByItemIdAndStatusAndStartIsBeforeAndEndIsAfter(int itemId, Status status, LocalDateTime end, LocalDateTime start);
+
+    @Query("select b.item.id as itemId, b.start as start, b.end as end from Booking b " +
+            "where b.item.id in ?1 and b.status in ?2 and b.start < ?4 and b.end > ?3 " +
+            "order by b.item.id, b.start")
+    List<BookingDtoForAvailability> findAllForAvailability(Collection<Integer> itemIds, Collection<Status> statuses,
+                                                           LocalDateTime from, LocalDateTime to);
+
+    @Query("select b.id as id, b.booker.id as bookerId, b.item.id as itemId, b.start as start from Booking b " +
+            "where b.item.id in ?1 and b.status = ?2 " +
+            "and (b.start = (select min(n.start) from Booking n where n.item.id = b.item.id and n.status = ?2 and n.start > ?3) " +
+            "or b.start = (select max(l.start) from Booking l where l.item.id = b.item.id and l.status = ?2 and l.start < ?3)) " +
+            "order by b.item.id, b.start, b.id")
+    List<BookingDtoForOwnerItems> findNextAndLastForItems(Collection<Integer> itemIds, Status status, LocalDateTime now);
+
+    // Последнее начавшееся и все последующие бронирования - для NextLastBookingCache
+    @Query("select b.id as id, b.booker.id as bookerId, b.item.id as itemId, b.start as start from Booking b " +
+            "where b.item.id in ?1 and b.status = ?2 " +
+            "and (b.start >= ?3 " +
+            "or b.start = (select max(l.start) from Booking l where l.item.id = b.item.id and l.status = ?2 and l.start < ?3)) " +
+            "order by b.item.id, b.start, b.id")
+    List<BookingDtoForOwnerItems> findLastAndUpcomingForItems(Collection<Integer> itemIds, Status status, LocalDateTime now);
+
+    // Число бронирований вещей в статусе status - для проверки записей NextLastBookingCache
+    @Query("select b.item.id as itemId, count(b) as bookings from Booking b " +
+            "where b.item.id in ?1 and b.status = ?2 group by b.item.id")
+    List<BookingCountDto> countAllForItems(Collection<Integer> itemIds, Status status);
 }
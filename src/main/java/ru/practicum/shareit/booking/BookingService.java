@@ -1,30 +1,49 @@
 package ru.practicum.shareit.booking;
 
+import org.springframework.data.domain.Slice;
+import ru.practicum.shareit.booking.dto.BookingBatchResultDto;
 import ru.practicum.shareit.booking.dto.BookingDtoIn;
 import ru.practicum.shareit.booking.dto.BookingDtoForItem;
+import ru.practicum.shareit.booking.dto.BookingDtoForOwnerItems;
 import ru.practicum.shareit.booking.dto.BookingDtoOut;
+import ru.practicum.shareit.booking.dto.BookingStatusDto;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.item.dto.AvailabilityWindowDto;
 
 import java.time.LocalDateTime;
-import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 public interface BookingService {
 
     BookingDtoOut createBooking(BookingDtoIn bookingDtoIn, int userId);
 
+    List<BookingBatchResultDto> createBookings(List<BookingDtoIn> bookingDtoIns, int userId, boolean allOrNothing);
+
     BookingDtoOut changeStatus(int userId, Integer bookingId, boolean approved);
 
+    List<BookingDtoOut> changeStatuses(int userId, List<BookingStatusDto> statuses);
+
     BookingDtoOut getBookingById(int userId, Integer bookingId);
 
-    Collection<BookingDtoOut> getAllForBooker(int userId, String state, Integer from, Integer size);
+    Slice<BookingDtoOut> getAllForBooker(int userId, String state, Integer from, Integer size);
+
+    Slice<BookingDtoOut> getAllForOwner(int userId, String state, Integer from, Integer size);
 
-    Collection<BookingDtoOut> getAllForOwner(int userId, String state, Integer from, Integer size);
+    Slice<BookingDtoOut> getAllForBookerAfter(int userId, String state, String after, Integer size);
+
+    Slice<BookingDtoOut> getAllForOwnerAfter(int userId, String state, String after, Integer size);
 
     BookingDtoForItem getNextBooking(Integer itemId, LocalDateTime now, Status status);
 
     BookingDtoForItem getLastBooking(Integer itemId, LocalDateTime now, Status status);
 
+    List<BookingDtoForOwnerItems> getNextAndLastBookings(List<Integer> itemIds, LocalDateTime now, Status status);
+
     Booking getBookingForComment(Integer userId, Integer itemId);
 
+    Map<Integer, List<AvailabilityWindowDto>> getBusyWindows(List<Integer> itemIds, LocalDateTime from, LocalDateTime to,
+                                                             boolean includeWaiting);
+
 }
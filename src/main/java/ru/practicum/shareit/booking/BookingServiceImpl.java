@@ -1,27 +1,49 @@
 package ru.practicum.shareit.booking;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.dto.BookingBatchResultDto;
+import ru.practicum.shareit.booking.dto.BookingCursor;
+import ru.practicum.shareit.booking.dto.BookingDtoForAvailability;
 import ru.practicum.shareit.booking.dto.BookingDtoIn;
 import ru.practicum.shareit.booking.dto.BookingDtoForItem;
+import ru.practicum.shareit.booking.dto.BookingDtoForOwnerItems;
+import ru.practicum.shareit.booking.dto.BookingDtoForStatusChange;
 import ru.practicum.shareit.booking.dto.BookingDtoOut;
+import ru.practicum.shareit.booking.dto.BookingStatusDto;
 import ru.practicum.shareit.booking.dto.State;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.config.TransactionRetry;
 import ru.practicum.shareit.exceptions.ObjectNotFoundException;
 import ru.practicum.shareit.exceptions.ValidationException;
 import ru.practicum.shareit.item.ItemService;
+import ru.practicum.shareit.item.dto.AvailabilityWindowDto;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.UserService;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.util.InClauseBatches;
 
 import java.time.LocalDateTime;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -31,20 +53,153 @@ public class BookingServiceImpl implements BookingService {
     private final BookingMapper bookingMapper;
     private final UserService userService;
     private final ItemService itemService;
+    private final BookingIntervalIndex bookingIntervalIndex;
+    private final NextLastBookingCache nextLastBookingCache;
+    private final ItemLocks itemLocks;
+    private final TransactionRetry transactionRetry;
+    private final int inClauseBatchSize;
+    private final int batchMaxSize;
 
-    public BookingServiceImpl(BookingRepository bookingRepository, BookingMapper bookingMapper, UserService userService, @Lazy ItemService itemService) {
+    public BookingServiceImpl(BookingRepository bookingRepository, BookingMapper bookingMapper, UserService userService,
+                              @Lazy ItemService itemService, BookingIntervalIndex bookingIntervalIndex,
+                              NextLastBookingCache nextLastBookingCache, ItemLocks itemLocks,
+                              TransactionRetry transactionRetry,
+                              @Value("${shareit.in-clause-batch-size:500}") int inClauseBatchSize,
+                              @Value("${shareit.booking-batch.max-size:1000}") int batchMaxSize) {
         this.bookingRepository = bookingRepository;
         this.bookingMapper = bookingMapper;
         this.userService = userService;
         this.itemService = itemService;
+        this.bookingIntervalIndex = bookingIntervalIndex;
+        this.nextLastBookingCache = nextLastBookingCache;
+        this.itemLocks = itemLocks;
+        this.transactionRetry = transactionRetry;
+        this.inClauseBatchSize = inClauseBatchSize;
+        this.batchMaxSize = batchMaxSize;
     }
 
 
+    // Транзакцию начинает TransactionRetry, чтобы повторить её, если база не дала блокировку вещи.
+    // Блокировки вещей в памяти берутся до транзакции и снимаются после её фиксации
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public BookingDtoOut createBooking(BookingDtoIn bookingDtoIn, int userId) {
         validateBooking(bookingDtoIn);
+        return itemLocks.callLocked(List.of(bookingDtoIn.getItemId()),
+                () -> transactionRetry.execute(() -> doCreateBooking(bookingDtoIn, userId)));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<BookingBatchResultDto> createBookings(List<BookingDtoIn> bookingDtoIns, int userId,
+                                                      boolean allOrNothing) {
+        if (bookingDtoIns.size() > batchMaxSize) {
+            log.info("В пакете {} бронирований, допустимо не больше {}", bookingDtoIns.size(), batchMaxSize);
+            throw new ValidationException("В пакете не может быть больше " + batchMaxSize + " бронирований");
+        }
+        Set<Integer> itemIds = new HashSet<>();
+        for (BookingDtoIn bookingDtoIn : bookingDtoIns) {
+            if (bookingDtoIn.getItemId() != null) {
+                itemIds.add(bookingDtoIn.getItemId());
+            }
+        }
+        return itemLocks.callLocked(itemIds,
+                () -> transactionRetry.execute(() -> doCreateBookings(bookingDtoIns, userId, itemIds, allOrNothing)));
+    }
+
+    // Вещь бронирования не меняется, поэтому её id читается до транзакции, а статус - уже под блокировкой
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public BookingDtoOut changeStatus(int userId, Integer bookingId, boolean approved) {
+        List<Integer> itemIds = bookingRepository.findItemIdById(bookingId).map(List::of).orElse(List.of());
+        return itemLocks.callLocked(itemIds,
+                () -> transactionRetry.execute(() -> doChangeStatus(userId, bookingId, approved, itemIds)));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<BookingDtoOut> changeStatuses(int userId, List<BookingStatusDto> statuses) {
+        validateStatuses(statuses);
+        List<Integer> bookingIds = statuses.stream().map(BookingStatusDto::getBookingId).collect(Collectors.toList());
+        // Бронирования читаются до блокировки вещей, чтобы узнать, какие вещи блокировать. Первая попытка
+        // использует это чтение: UPDATE меняет только бронирования в статусе WAITING, а если статус успели
+        // изменить, повтор перечитывает бронирования уже под блокировкой
+        AtomicReference<Map<Integer, BookingDtoForStatusChange>> prefetched =
+                new AtomicReference<>(findForStatusChange(bookingIds));
+        Set<Integer> itemIds = prefetched.get().values().stream()
+                .map(BookingDtoForStatusChange::getItemId)
+                .collect(Collectors.toSet());
+        return itemLocks.callLocked(itemIds, () -> transactionRetry.execute(() ->
+                doChangeStatuses(userId, statuses, bookingIds, itemIds, prefetched.getAndSet(null))));
+    }
+
+    private BookingDtoOut doCreateBooking(BookingDtoIn bookingDtoIn, int userId) {
+        itemLocks.lockRowsUntilCompletion(List.of(bookingDtoIn.getItemId()));
         Item item = itemService.getItemForBooking(bookingDtoIn.getItemId()); // Проверяем, что вещь существует
         Booking booking = bookingMapper.toBooking(bookingDtoIn, userService.getUserById(userId), item);
+        validateItemForBooking(item, userId, booking.getStart(), booking.getEnd());
+        booking.setStatus(Status.WAITING);
+        return bookingMapper.toBookingDtoOut(bookingRepository.save(booking));
+    }
+
+    // Вещи и бронирующий загружаются заранее, проверки идут в памяти, а новые бронирования вставляются
+    // пакетами JDBC (hibernate.jdbc.batch_size) в одной транзакции
+    private List<BookingBatchResultDto> doCreateBookings(List<BookingDtoIn> bookingDtoIns, int userId,
+                                                         Set<Integer> itemIds, boolean allOrNothing) {
+        UserDto booker = userService.getUserById(userId);
+        itemLocks.lockRowsUntilCompletion(itemIds);
+        Map<Integer, Item> items = itemService.getItemsForBooking(itemIds);
+        bookingIntervalIndex.preload(items.keySet());
+        // Интервалы уже принятых бронирований пакета по вещам: пересекаться друг с другом они не должны
+        Map<Integer, NavigableMap<LocalDateTime, LocalDateTime>> batchIntervals = new HashMap<>();
+        List<BookingBatchResultDto> results = new ArrayList<>();
+        List<BookingBatchResultDto> accepted = new ArrayList<>();
+        List<Booking> bookings = new ArrayList<>();
+        for (int i = 0; i < bookingDtoIns.size(); i++) {
+            BookingBatchResultDto result = new BookingBatchResultDto(i, null, null);
+            results.add(result);
+            try {
+                bookings.add(toNewBooking(bookingDtoIns.get(i), booker, items, batchIntervals));
+                accepted.add(result);
+            } catch (ValidationException | ObjectNotFoundException e) {
+                if (allOrNothing) {
+                    throw new ValidationException("Бронирование " + i + ": " + e.getMessage());
+                }
+                result.setError(e.getMessage());
+            }
+        }
+        List<Booking> saved = bookingRepository.saveAll(bookings);
+        for (int i = 0; i < saved.size(); i++) {
+            accepted.get(i).setBooking(bookingMapper.toBookingDtoOut(saved.get(i)));
+        }
+        log.info("Из пакета {} бронирований создано {}", bookingDtoIns.size(), saved.size());
+        return results;
+    }
+
+    private Booking toNewBooking(BookingDtoIn bookingDtoIn, UserDto booker, Map<Integer, Item> items,
+                                 Map<Integer, NavigableMap<LocalDateTime, LocalDateTime>> batchIntervals) {
+        validateBooking(bookingDtoIn);
+        Item item = items.get(bookingDtoIn.getItemId());
+        if (item == null) {
+            log.info("Вещь с id {} не найдена.", bookingDtoIn.getItemId());
+            throw new ObjectNotFoundException("Вещь не найдена");
+        }
+        validateItemForBooking(item, booker.getId(), bookingDtoIn.getStart(), bookingDtoIn.getEnd());
+        NavigableMap<LocalDateTime, LocalDateTime> intervals = batchIntervals.computeIfAbsent(item.getId(),
+                id -> new TreeMap<>());
+        // Интервалы не пересекаются, поэтому проверить достаточно ближайший, начавшийся раньше конца нового
+        Map.Entry<LocalDateTime, LocalDateTime> previous = intervals.lowerEntry(bookingDtoIn.getEnd());
+        if (previous != null && previous.getValue().isAfter(bookingDtoIn.getStart())) {
+            log.info("Бронирования вещи {} в пакете пересекаются", item.getId());
+            throw new ValidationException("Бронирование пересекается с другим бронированием этой вещи в пакете");
+        }
+        intervals.put(bookingDtoIn.getStart(), bookingDtoIn.getEnd());
+        Booking booking = bookingMapper.toBooking(bookingDtoIn, booker, item);
+        booking.setStatus(Status.WAITING);
+        return booking;
+    }
+
+    private void validateItemForBooking(Item item, int userId, LocalDateTime start, LocalDateTime end) {
         if (item.getAvailable() == false) {
             log.info("Вещь недоступна");
             throw new ValidationException("Вещь недоступна");
@@ -53,12 +208,15 @@ public class BookingServiceImpl implements BookingService {
             log.info("Владелец не может забронировать свою вещь");
             throw new ObjectNotFoundException("Владелец не может забронировать свою вещь");
         }
-        booking.setStatus(Status.WAITING);
-        return bookingMapper.toBookingDtoOut(bookingRepository.save(booking));
+        if (bookingIntervalIndex.hasOverlap(item.getId(), start, end)) {
+            log.info("Вещь {} уже забронирована на даты {} - {}", item.getId(), start, end);
+            throw new ValidationException("Вещь уже забронирована на эти даты");
+        }
     }
 
-    @Override
-    public BookingDtoOut changeStatus(int userId, Integer bookingId, boolean approved) {
+    private BookingDtoOut doChangeStatus(int userId, Integer bookingId, boolean approved, List<Integer> itemIds) {
+        // Бронирование читаем под блокировкой вещи, иначе два одновременных ответа владельца пройдут проверку WAITING
+        itemLocks.lockRowsUntilCompletion(itemIds);
         Optional<Booking> bookingOpt = bookingRepository.findById(bookingId);
         Booking booking = null;
         if (bookingOpt.isPresent()) {
@@ -76,7 +234,21 @@ public class BookingServiceImpl implements BookingService {
             throw new ValidationException("Некорректный статус");
         } else {
             if (approved == true) {
+                if (!bookingIntervalIndex.tryAdd(booking.getItem().getId(), booking.getStart(), booking.getEnd())) {
+                    log.info("Бронирование {} пересекается с подтверждённым бронированием", bookingId);
+                    throw new ValidationException("Вещь уже забронирована на эти даты");
+                }
                 booking.setStatus(Status.APPROVED);
+                nextLastBookingCache.addOnCommit(booking);
+                // Ожидающие бронирования на те же даты уже не могут быть подтверждены - отклоняем их одним запросом
+                int rejected = bookingRepository.updateStatusOfOverlapping(booking.getItem().getId(), booking.getStart(),
+                        booking.getEnd(), booking.getId(), Status.WAITING, Status.REJECTED);
+                if (rejected > 0) {
+                    log.info("Отклонено {} ожидающих бронирований, пересекающихся с подтверждённым {}", rejected, bookingId);
+                }
+                BookingDtoOut bookingDtoOut = bookingMapper.toBookingDtoOut(bookingRepository.save(booking));
+                bookingDtoOut.setRejectedCount(rejected);
+                return bookingDtoOut;
             } else {
                 booking.setStatus(Status.REJECTED);
             }
@@ -84,7 +256,77 @@ public class BookingServiceImpl implements BookingService {
         }
     }
 
+    // Бронирования, их статусы и владельцы вещей читаются одним запросом, а статусы меняются запросами UPDATE
+    // по списку id - без загрузки сущностей
+    private List<BookingDtoOut> doChangeStatuses(int userId, List<BookingStatusDto> statuses, List<Integer> bookingIds,
+                                                 Set<Integer> itemIds, Map<Integer, BookingDtoForStatusChange> bookings) {
+        itemLocks.lockRowsUntilCompletion(itemIds);
+        if (bookings == null) {
+            bookings = findForStatusChange(bookingIds);
+        }
+        for (Integer bookingId : bookingIds) {
+            BookingDtoForStatusChange booking = bookings.get(bookingId);
+            if (booking == null) {
+                log.info("Бронирование с id {} не найдено.", bookingId);
+                throw new ObjectNotFoundException("Бронирование не найдено");
+            }
+            if (!booking.getOwnerId().equals(userId)) {
+                log.info("Попытка изменить статус бронирования " + bookingId + " не владельцем вещи " + userId);
+                throw new ObjectNotFoundException("Бронирование может подтвердить или отменить только владелец вещи");
+            }
+            if (booking.getStatus() != Status.WAITING) {
+                log.info("Некорректный статус бронирования {}", bookingId);
+                throw new ValidationException("Некорректный статус");
+            }
+        }
+        List<BookingDtoForStatusChange> approved = new ArrayList<>();
+        List<Integer> approvedIds = new ArrayList<>();
+        List<Integer> rejectedIds = new ArrayList<>();
+        for (BookingStatusDto status : statuses) {
+            BookingDtoForStatusChange booking = bookings.get(status.getBookingId());
+            if (status.getApproved()) {
+                if (!bookingIntervalIndex.tryAdd(booking.getItemId(), booking.getStart(), booking.getEnd())) {
+                    log.info("Бронирование {} пересекается с подтверждённым бронированием", booking.getId());
+                    throw new ValidationException("Вещь уже забронирована на эти даты");
+                }
+                approved.add(booking);
+                approvedIds.add(booking.getId());
+            } else {
+                rejectedIds.add(booking.getId());
+            }
+        }
+        // Статусы могли изменить после чтения - тогда транзакция повторяется
+        if (updateStatus(approvedIds, Status.APPROVED) + updateStatus(rejectedIds, Status.REJECTED) != bookingIds.size()) {
+            throw new OptimisticLockingFailureException("Статус бронирований изменён другим запросом");
+        }
+        Map<Integer, Integer> rejectedCounts = new HashMap<>();
+        for (BookingDtoForStatusChange booking : approved) {
+            rejectedCounts.put(booking.getId(), bookingRepository.updateStatusOfOverlapping(booking.getItemId(),
+                    booking.getStart(), booking.getEnd(), booking.getId(), Status.WAITING, Status.REJECTED));
+        }
+        nextLastBookingCache.addAllOnCommit(approved);
+
+        Map<Integer, BookingDtoOut> updated = new HashMap<>();
+        for (List<Integer> batch : InClauseBatches.partition(bookingIds, inClauseBatchSize)) {
+            for (BookingDtoOut booking : bookingRepository.findAllDtoByIdIn(batch)) {
+                booking.setRejectedCount(rejectedCounts.get(booking.getId()));
+                updated.put(booking.getId(), booking);
+            }
+        }
+        log.info("Владелец {} изменил статус {} бронирований", userId, bookingIds.size());
+        return bookingIds.stream().map(updated::get).collect(Collectors.toList());
+    }
+
+    private int updateStatus(List<Integer> bookingIds, Status newStatus) {
+        int updated = 0;
+        for (List<Integer> batch : InClauseBatches.partition(bookingIds, inClauseBatchSize)) {
+            updated += bookingRepository.updateStatus(batch, Status.WAITING, newStatus);
+        }
+        return updated;
+    }
+
     @Override
+    @Transactional(readOnly = true)
     public BookingDtoOut getBookingById(int userId, Integer bookingId) {
         Optional<Booking> bookingOpt = bookingRepository.findById(bookingId);
         Booking booking = null;
@@ -102,109 +344,166 @@ public class BookingServiceImpl implements BookingService {
     }
 
     @Override
-    public Collection<BookingDtoOut> getAllForBooker(int userId, String state, Integer from, Integer size) {
+    @Transactional(readOnly = true)
+    public Slice<BookingDtoOut> getAllForBooker(int userId, String state, Integer from, Integer size) {
         userService.getUserById(userId);
         LocalDateTime now = LocalDateTime.now();
-        if (from == null || size == null) {
-            if (state.equals(State.ALL.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByBookerIdOrderByEndDesc(userId));
-            } else if (state.equals(State.CURRENT.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByBookerIdAndEndIsAfterAndStartIsBeforeOrderByEndDesc(
-                        userId, now, now));
-            } else if (state.equals(State.PAST.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByBookerIdAndEndIsBeforeOrderByEndDesc(userId, now));
-            } else if (state.equals(State.FUTURE.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByBookerIdAndStartIsAfterOrderByEndDesc(userId, now));
-            } else if (state.equals(State.REJECTED.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByBookerIdAndStatusOrderByEndDesc(userId, Status.REJECTED));
-            } else if (state.equals(State.WAITING.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByBookerIdAndStatusOrderByEndDesc(userId, Status.WAITING));
-            } else {
-                throw new ValidationException("Unknown state: UNSUPPORTED_STATUS");
-            }
+        Pageable pageable = pageable(from, size);
+        if (state.equals(State.ALL.toString())) {
+            return bookingRepository.findAllByBookerId(userId, pageable);
+        } else if (state.equals(State.CURRENT.toString())) {
+            return bookingRepository.findAllByBookerIdAndEndIsAfterAndStartIsBefore(userId, now, now, pageable);
+        } else if (state.equals(State.PAST.toString())) {
+            return bookingRepository.findAllByBookerIdAndEndIsBefore(userId, now, pageable);
+        } else if (state.equals(State.FUTURE.toString())) {
+            return bookingRepository.findAllByBookerIdAndStartIsAfter(userId, now, pageable);
+        } else if (state.equals(State.REJECTED.toString())) {
+            return bookingRepository.findAllByBookerIdAndStatus(userId, Status.REJECTED, pageable);
+        } else if (state.equals(State.WAITING.toString())) {
+            return bookingRepository.findAllByBookerIdAndStatus(userId, Status.WAITING, pageable);
         } else {
-            validatePageParams(from, size);
-            int pageNumber = from / size;
-            Pageable pageable = PageRequest.of(pageNumber, size, Sort.by(Sort.Direction.DESC, "end"));
-            if (state.equals(State.ALL.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByBookerId(userId, pageable).toList());
-            } else if (state.equals(State.CURRENT.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByBookerIdAndEndIsAfterAndStartIsBefore(
-                        userId, now, now, pageable).toList());
-            } else if (state.equals(State.PAST.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByBookerIdAndEndIsBefore(userId, now, pageable).toList());
-            } else if (state.equals(State.FUTURE.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByBookerIdAndStartIsAfter(userId, now, pageable).toList());
-            } else if (state.equals(State.REJECTED.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByBookerIdAndStatus(userId, Status.REJECTED, pageable).toList());
-            } else if (state.equals(State.WAITING.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByBookerIdAndStatus(userId, Status.WAITING, pageable).toList());
-            } else {
-                throw new ValidationException("Unknown state: UNSUPPORTED_STATUS");
-            }
+            throw new ValidationException("Unknown state: UNSUPPORTED_STATUS");
         }
     }
 
     @Override
-    public Collection<BookingDtoOut> getAllForOwner(int userId, String state, Integer from, Integer size) {
+    @Transactional(readOnly = true)
+    public Slice<BookingDtoOut> getAllForOwner(int userId, String state, Integer from, Integer size) {
         LocalDateTime now = LocalDateTime.now();
         userService.getUserById(userId);
-        if (from == null || size == null) {
-            if (state.equals(State.ALL.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByItemOwnerIdOrderByEndDesc(userId));
-            } else if (state.equals(State.CURRENT.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByItemOwnerIdAndEndIsAfterAndStartIsBeforeOrderByEndDesc(
-                        userId, now, now));
-            } else if (state.equals(State.PAST.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByItemOwnerIdAndEndIsBeforeOrderByEndDesc(userId, now));
-            } else if (state.equals(State.FUTURE.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByItemOwnerIdAndStartIsAfterOrderByEndDesc(userId, now));
-            } else if (state.equals(State.REJECTED.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByItemOwnerIdAndStatusOrderByEndDesc(userId, Status.REJECTED));
-            } else if (state.equals(State.WAITING.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByItemOwnerIdAndStatusOrderByEndDesc(userId, Status.WAITING));
-            } else {
-                throw new ValidationException("Unknown state: UNSUPPORTED_STATUS");
-            }
+        Pageable pageable = pageable(from, size);
+        if (state.equals(State.ALL.toString())) {
+            return bookingRepository.findAllByItemOwnerId(userId, pageable);
+        } else if (state.equals(State.CURRENT.toString())) {
+            return bookingRepository.findAllByItemOwnerIdAndEndIsAfterAndStartIsBefore(userId, now, now, pageable);
+        } else if (state.equals(State.PAST.toString())) {
+            return bookingRepository.findAllByItemOwnerIdAndEndIsBefore(userId, now, pageable);
+        } else if (state.equals(State.FUTURE.toString())) {
+            return bookingRepository.findAllByItemOwnerIdAndStartIsAfter(userId, now, pageable);
+        } else if (state.equals(State.REJECTED.toString())) {
+            return bookingRepository.findAllByItemOwnerIdAndStatus(userId, Status.REJECTED, pageable);
+        } else if (state.equals(State.WAITING.toString())) {
+            return bookingRepository.findAllByItemOwnerIdAndStatus(userId, Status.WAITING, pageable);
         } else {
-            validatePageParams(from, size);
-            int pageNumber = from / size;
-            Pageable pageable = PageRequest.of(pageNumber, size, Sort.by(Sort.Direction.DESC, "end"));
-            if (state.equals(State.ALL.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByItemOwnerId(userId, pageable).toList());
-            } else if (state.equals(State.CURRENT.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByItemOwnerIdAndEndIsAfterAndStartIsBefore(
-                        userId, now, now, pageable).toList());
-            } else if (state.equals(State.PAST.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByItemOwnerIdAndEndIsBefore(userId, now, pageable).toList());
-            } else if (state.equals(State.FUTURE.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByItemOwnerIdAndStartIsAfter(userId, now, pageable).toList());
-            } else if (state.equals(State.REJECTED.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByItemOwnerIdAndStatus(userId, Status.REJECTED, pageable).toList());
-            } else if (state.equals(State.WAITING.toString())) {
-                return bookingMapper.toBookingDtoOut(bookingRepository.findAllByItemOwnerIdAndStatus(userId, Status.WAITING, pageable).toList());
-            } else {
-                throw new ValidationException("Unknown state: UNSUPPORTED_STATUS");
-            }
+            throw new ValidationException("Unknown state: UNSUPPORTED_STATUS");
         }
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public Slice<BookingDtoOut> getAllForBookerAfter(int userId, String state, String after, Integer size) {
+        userService.getUserById(userId);
+        BookingCursor cursor = parseCursor(after, size);
+        Pageable limit = PageRequest.of(0, size);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime end = cursor.getEnd();
+        int id = cursor.getId();
+        if (state.equals(State.ALL.toString())) {
+            return bookingRepository.findAllByBookerIdAfterCursor(userId, end, id, limit);
+        } else if (state.equals(State.CURRENT.toString())) {
+            return bookingRepository.findAllByBookerIdCurrentAfterCursor(userId, end, id, now, limit);
+        } else if (state.equals(State.PAST.toString())) {
+            return bookingRepository.findAllByBookerIdAndEndIsBeforeAfterCursor(userId, end, id, now, limit);
+        } else if (state.equals(State.FUTURE.toString())) {
+            return bookingRepository.findAllByBookerIdAndStartIsAfterAfterCursor(userId, end, id, now, limit);
+        } else if (state.equals(State.REJECTED.toString())) {
+            return bookingRepository.findAllByBookerIdAndStatusAfterCursor(userId, end, id, Status.REJECTED, limit);
+        } else if (state.equals(State.WAITING.toString())) {
+            return bookingRepository.findAllByBookerIdAndStatusAfterCursor(userId, end, id, Status.WAITING, limit);
+        } else {
+            throw new ValidationException("Unknown state: UNSUPPORTED_STATUS");
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<BookingDtoOut> getAllForOwnerAfter(int userId, String state, String after, Integer size) {
+        userService.getUserById(userId);
+        BookingCursor cursor = parseCursor(after, size);
+        Pageable limit = PageRequest.of(0, size);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime end = cursor.getEnd();
+        int id = cursor.getId();
+        if (state.equals(State.ALL.toString())) {
+            return bookingRepository.findAllByItemOwnerIdAfterCursor(userId, end, id, limit);
+        } else if (state.equals(State.CURRENT.toString())) {
+            return bookingRepository.findAllByItemOwnerIdCurrentAfterCursor(userId, end, id, now, limit);
+        } else if (state.equals(State.PAST.toString())) {
+            return bookingRepository.findAllByItemOwnerIdAndEndIsBeforeAfterCursor(userId, end, id, now, limit);
+        } else if (state.equals(State.FUTURE.toString())) {
+            return bookingRepository.findAllByItemOwnerIdAndStartIsAfterAfterCursor(userId, end, id, now, limit);
+        } else if (state.equals(State.REJECTED.toString())) {
+            return bookingRepository.findAllByItemOwnerIdAndStatusAfterCursor(userId, end, id, Status.REJECTED, limit);
+        } else if (state.equals(State.WAITING.toString())) {
+            return bookingRepository.findAllByItemOwnerIdAndStatusAfterCursor(userId, end, id, Status.WAITING, limit);
+        } else {
+            throw new ValidationException("Unknown state: UNSUPPORTED_STATUS");
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public BookingDtoForItem getNextBooking(Integer itemId, LocalDateTime now, Status status) {
+        if (status == Status.APPROVED && nextLastBookingCache.isUsable()) {
+            return nextLastBookingCache.getNext(itemId, now);
+        }
         return bookingRepository.findFirst1ByItemIdAndStartIsAfterAndStatusOrderByStartAsc(itemId, now, status);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public BookingDtoForItem getLastBooking(Integer itemId, LocalDateTime now, Status status) {
+        if (status == Status.APPROVED && nextLastBookingCache.isUsable()) {
+            return nextLastBookingCache.getLast(itemId, now);
+        }
         return bookingRepository.findFirst1ByItemIdAndStartIsBeforeAndStatusOrderByStartDesc(itemId, now, status);
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public List<BookingDtoForOwnerItems> getNextAndLastBookings(List<Integer> itemIds, LocalDateTime now, Status status) {
+        if (status == Status.APPROVED && nextLastBookingCache.isUsable()) {
+            return nextLastBookingCache.getNextAndLast(itemIds, now);
+        }
+        List<BookingDtoForOwnerItems> bookings = new ArrayList<>();
+        for (List<Integer> batch : InClauseBatches.partition(itemIds, inClauseBatchSize)) {
+            bookings.addAll(bookingRepository.findNextAndLastForItems(batch, status, now));
+        }
+        return bookings;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Booking getBookingForComment(Integer userId, Integer itemId) {
         Optional<Booking> booking = bookingRepository.findFirst1ByBookerIdAndItemIdOrderByEndAsc(userId, itemId);
         return booking.orElse(null);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Integer, List<AvailabilityWindowDto>> getBusyWindows(List<Integer> itemIds, LocalDateTime from,
+                                                                    LocalDateTime to, boolean includeWaiting) {
+        List<Status> statuses = includeWaiting ? List.of(Status.APPROVED, Status.WAITING) : List.of(Status.APPROVED);
+        Map<Integer, List<AvailabilityWindowDto>> busyWindows = new HashMap<>();
+        for (List<Integer> batch : InClauseBatches.partition(itemIds, inClauseBatchSize)) {
+            for (BookingDtoForAvailability booking : bookingRepository.findAllForAvailability(batch, statuses, from, to)) {
+                List<AvailabilityWindowDto> windows = busyWindows.computeIfAbsent(booking.getItemId(), id -> new ArrayList<>());
+                LocalDateTime start = booking.getStart().isBefore(from) ? from : booking.getStart();
+                LocalDateTime end = booking.getEnd().isAfter(to) ? to : booking.getEnd();
+                AvailabilityWindowDto last = windows.isEmpty() ? null : windows.get(windows.size() - 1);
+                // Бронирования отсортированы по началу, поэтому пересекающиеся сливаются с последним окном
+                if (last != null && !start.isAfter(last.getEnd())) {
+                    if (end.isAfter(last.getEnd())) {
+                        last.setEnd(end);
+                    }
+                } else {
+                    windows.add(new AvailabilityWindowDto(start, end));
+                }
+            }
+        }
+        return busyWindows;
+    }
+
     private void validateBooking(BookingDtoIn bookingDtoIn) {
         if (bookingDtoIn.getItemId() == null) {
             log.info("Вещь не может быть пустой");
@@ -228,6 +527,54 @@ public class BookingServiceImpl implements BookingService {
         }
     }
 
+    private void validateStatuses(List<BookingStatusDto> statuses) {
+        if (statuses.isEmpty()) {
+            throw new ValidationException("Список бронирований не может быть пустым");
+        }
+        if (statuses.size() > batchMaxSize) {
+            log.info("В пакете {} бронирований, допустимо не больше {}", statuses.size(), batchMaxSize);
+            throw new ValidationException("В пакете не может быть больше " + batchMaxSize + " бронирований");
+        }
+        Set<Integer> bookingIds = new HashSet<>();
+        for (BookingStatusDto status : statuses) {
+            if (status.getBookingId() == null || status.getApproved() == null) {
+                log.info("Не указано бронирование или решение владельца");
+                throw new ValidationException("Нужно указать бронирование и решение владельца");
+            }
+            if (!bookingIds.add(status.getBookingId())) {
+                log.info("Бронирование {} указано несколько раз", status.getBookingId());
+                throw new ValidationException("Бронирование " + status.getBookingId() + " указано несколько раз");
+            }
+        }
+    }
+
+    private Map<Integer, BookingDtoForStatusChange> findForStatusChange(List<Integer> bookingIds) {
+        Map<Integer, BookingDtoForStatusChange> bookings = new HashMap<>();
+        for (List<Integer> batch : InClauseBatches.partition(bookingIds, inClauseBatchSize)) {
+            for (BookingDtoForStatusChange booking : bookingRepository.findAllForStatusChange(batch)) {
+                bookings.put(booking.getId(), booking);
+            }
+        }
+        return bookings;
+    }
+
+    private BookingCursor parseCursor(String after, Integer size) {
+        if (size == null) {
+            throw new ValidationException("Для постраничного вывода по курсору нужно указать size");
+        }
+        validatePageParams(0, size);
+        return BookingCursor.parse(after);
+    }
+
+    // Без from и size возвращается весь список; порядок задан в самих запросах репозитория
+    private Pageable pageable(Integer from, Integer size) {
+        if (from == null || size == null) {
+            return Pageable.unpaged();
+        }
+        validatePageParams(from, size);
+        return PageRequest.of(from / size, size);
+    }
+
     private void validatePageParams(Integer from, Integer size) {
         if (from < 0) {
             throw new ValidationException("Индекс элемента не может быть меньше 0");
@@ -0,0 +1,149 @@
+package ru.practicum.shareit.booking;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.exceptions.ConflictException;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.util.InClauseBatches;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Полосатые блокировки бронирований по вещи: изменения одной вещи внутри экземпляра приложения идут по очереди,
+// разные вещи попадают в разные полосы и не ждут друг друга. Блокировки в памяти берутся до начала транзакции,
+// поэтому запрос, ожидающий вещь, не держит соединение из пула, а снимаются после фиксации, чтобы следующий
+// запрос к той же вещи увидел уже зафиксированные изменения. В режиме DATABASE внутри транзакции дополнительно
+// блокируется строка вещи в базе - это защищает и от запросов к другим экземплярам приложения, а подтверждённые
+// интервалы вещи перечитываются из базы, потому что их могли изменить другие экземпляры. В режиме NONE
+// блокировок нет: от потерянных изменений защищают только версии бронирований и вещей
+@Component
+@Slf4j
+public class ItemLocks {
+    public enum Mode {
+        LOCAL,
+        DATABASE,
+        NONE
+    }
+
+    private final ItemRepository itemRepository;
+    private final BookingIntervalIndex bookingIntervalIndex;
+    private final Mode mode;
+    private final ReentrantLock[] stripes;
+    private final long timeoutMillis;
+    private final int inClauseBatchSize;
+
+    public ItemLocks(ItemRepository itemRepository, BookingIntervalIndex bookingIntervalIndex,
+                     @Value("${shareit.item-locks.mode:local}") Mode mode,
+                     @Value("${shareit.item-locks.stripes:1024}") int stripes,
+                     @Value("${shareit.item-locks.timeout:10s}") Duration timeout,
+                     @Value("${shareit.in-clause-batch-size:500}") int inClauseBatchSize) {
+        this.itemRepository = itemRepository;
+        this.bookingIntervalIndex = bookingIntervalIndex;
+        this.mode = mode;
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.timeoutMillis = timeout.toMillis();
+        this.inClauseBatchSize = inClauseBatchSize;
+    }
+
+    // Выполняет action, обычно транзакцию целиком, под блокировками вещей в памяти
+    public <T> T callLocked(Collection<Integer> itemIds, Supplier<T> action) {
+        if (mode == Mode.NONE) {
+            return action.get();
+        }
+        List<ReentrantLock> locks = lockStripes(itemIds);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Внутри уже начатой транзакции изменения фиксируются позже, поэтому и блокировки держим до её конца
+            unlockOnCompletion(locks);
+            return action.get();
+        }
+        try {
+            return action.get();
+        } finally {
+            unlock(locks);
+        }
+    }
+
+    // Строки блокируются одним запросом на каждую часть списка. Части идут по возрастанию id, как и строки
+    // внутри запроса, поэтому экземпляры приложения берут общие строки в одном порядке
+    public void lockRowsUntilCompletion(Collection<Integer> itemIds) {
+        if (mode != Mode.DATABASE) {
+            return;
+        }
+        List<Integer> sortedIds = new ArrayList<>(new TreeSet<>(itemIds));
+        for (List<Integer> batch : InClauseBatches.partition(sortedIds, inClauseBatchSize)) {
+            // Ожидание ограничено таймаутом блокировок базы, по его истечении транзакцию повторяет TransactionRetry
+            try {
+                itemRepository.findAllByIdInForUpdate(batch);
+            } catch (QueryTimeoutException e) {
+                // H2 сообщает о таймауте блокировки как о таймауте запроса
+                throw new CannotAcquireLockException("Не дождались блокировки строк вещей " + batch, e);
+            }
+        }
+        // Запрос блокировки загружает вещи из базы, поэтому и дальше в транзакции они свежие, а не из кэша
+        // второго уровня этого экземпляра. Подтверждения с других экземпляров видны только в базе
+        bookingIntervalIndex.reload(sortedIds);
+    }
+
+    // Полосы блокируются по возрастанию номера: два запроса с пересекающимися наборами вещей
+    // берут общие блокировки в одном порядке и не ждут друг друга по кругу
+    private List<ReentrantLock> lockStripes(Collection<Integer> itemIds) {
+        List<ReentrantLock> locked = new ArrayList<>();
+        try {
+            for (int stripe : itemIds.stream().mapToInt(this::stripe).distinct().sorted().toArray()) {
+                ReentrantLock lock = stripes[stripe];
+                if (!lock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    log.info("Не дождались блокировки вещей {}", itemIds);
+                    throw new ConflictException("Вещь сейчас изменяется другим запросом, повторите позже");
+                }
+                locked.add(lock);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            unlock(locked);
+            throw new ConflictException("Вещь сейчас изменяется другим запросом, повторите позже");
+        } catch (RuntimeException e) {
+            unlock(locked);
+            throw e;
+        }
+        return locked;
+    }
+
+    private void unlockOnCompletion(List<ReentrantLock> locks) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                unlock(locks);
+            }
+        });
+    }
+
+    private static void unlock(List<ReentrantLock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    int stripe(int itemId) {
+        // Перемешиваем биты id, чтобы вещи одного владельца, созданные подряд, расходились по полосам
+        int hash = itemId * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+}
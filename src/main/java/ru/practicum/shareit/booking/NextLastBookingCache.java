@@ -0,0 +1,255 @@
+package ru.practicum.shareit.booking;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.booking.dto.BookingCountDto;
+import ru.practicum.shareit.booking.dto.BookingDtoForOwnerItems;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.config.PrimaryReads;
+import ru.practicum.shareit.util.InClauseBatches;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Следующее и последнее подтверждённые бронирования вещей для владельца. Для вещи хранятся последнее начавшееся
+// бронирование и все будущие; по мере наступления их начала голова списка сдвигается вперёд.
+// Подтверждения этого экземпляра попадают в кэш после фиксации транзакции. Подтверждённые бронирования не меняют
+// статус, поэтому их число у вещи только растёт: при чтении оно сверяется с базой одним запросом на пакет вещей,
+// и запись с другим числом перечитывается. Прочие изменения в обход сервиса видны после истечения ttl
+@Component
+public class NextLastBookingCache {
+    private static final Comparator<BookingEntry> ORDER = Comparator.comparing(BookingEntry::getStart)
+            .thenComparing(BookingEntry::getId);
+
+    private final BookingRepository bookingRepository;
+    private final PrimaryReads primaryReads;
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final int inClauseBatchSize;
+    private final Map<Integer, ItemBookings> itemBookings = new ConcurrentHashMap<>();
+    // Счётчик подтверждений: загрузка, во время которой что-то подтвердили, в кэш не сохраняется
+    private final AtomicLong approvals = new AtomicLong();
+
+    public NextLastBookingCache(BookingRepository bookingRepository,
+                                PrimaryReads primaryReads,
+                                @Value("${shareit.booking-cache.enabled:true}") boolean enabled,
+                                @Value("${shareit.booking-cache.ttl:5m}") Duration ttl,
+                                @Value("${shareit.in-clause-batch-size:500}") int inClauseBatchSize) {
+        this.bookingRepository = bookingRepository;
+        this.primaryReads = primaryReads;
+        this.enabled = enabled;
+        this.ttlNanos = ttl.toNanos();
+        this.inClauseBatchSize = inClauseBatchSize;
+    }
+
+    // В пишущей транзакции могут быть незафиксированные изменения бронирований, их кэш не видит
+    public boolean isUsable() {
+        return enabled && TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    public BookingDtoForOwnerItems getNext(int itemId, LocalDateTime now) {
+        return find(itemId, now, true);
+    }
+
+    public BookingDtoForOwnerItems getLast(int itemId, LocalDateTime now) {
+        return find(itemId, now, false);
+    }
+
+    public List<BookingDtoForOwnerItems> getNextAndLast(List<Integer> itemIds, LocalDateTime now) {
+        List<BookingDtoForOwnerItems> result = new ArrayList<>();
+        List<Integer> missing = new ArrayList<>();
+        // Подтверждения других экземпляров приложения меняют число подтверждённых бронирований вещи. Число читается
+        // раньше списков: подтверждение между запросами приведёт к лишней перезагрузке, а не к записи, которая
+        // выглядит актуальной без нового бронирования
+        Map<Integer, Long> approved = primaryReads.execute(() -> countApproved(itemIds));
+        for (Integer itemId : itemIds) {
+            ItemBookings bookings = itemBookings.get(itemId);
+            if (bookings == null || bookings.isExpired() || !bookings.hasApproved(approved.getOrDefault(itemId, 0L))
+                    || !bookings.addNextAndLast(now, result)) {
+                missing.add(itemId);
+            }
+        }
+        for (List<Integer> batch : InClauseBatches.partition(missing, inClauseBatchSize)) {
+            load(batch, now, approved, result);
+        }
+        return result;
+    }
+
+    public void addOnCommit(Booking booking) {
+        addOnCommit(List.of(new BookingEntry(booking.getId(), booking.getBooker().getId(), booking.getItem().getId(),
+                booking.getStart())));
+    }
+
+    public void addAllOnCommit(Collection<? extends BookingDtoForOwnerItems> bookings) {
+        List<BookingEntry> entries = new ArrayList<>();
+        for (BookingDtoForOwnerItems booking : bookings) {
+            entries.add(new BookingEntry(booking.getId(), booking.getBookerId(), booking.getItemId(), booking.getStart()));
+        }
+        addOnCommit(entries);
+    }
+
+    private void addOnCommit(List<BookingEntry> entries) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            entries.forEach(this::add);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                entries.forEach(NextLastBookingCache.this::add);
+            }
+        });
+    }
+
+    private BookingDtoForOwnerItems find(int itemId, LocalDateTime now, boolean next) {
+        for (BookingDtoForOwnerItems booking : getNextAndLast(List.of(itemId), now)) {
+            if (booking.getStart().isAfter(now) == next) {
+                return booking;
+            }
+        }
+        return null;
+    }
+
+    private void load(List<Integer> itemIds, LocalDateTime now, Map<Integer, Long> approved,
+                      List<BookingDtoForOwnerItems> result) {
+        long version = approvals.get();
+        long expiresAt = System.nanoTime() + ttlNanos;
+        Map<Integer, ItemBookings> loaded = new LinkedHashMap<>();
+        for (Integer itemId : itemIds) {
+            ItemBookings bookings = new ItemBookings(expiresAt);
+            bookings.approved = approved.getOrDefault(itemId, 0L);
+            loaded.put(itemId, bookings);
+        }
+        for (BookingDtoForOwnerItems booking : primaryReads.execute(() ->
+                bookingRepository.findLastAndUpcomingForItems(itemIds, Status.APPROVED, now))) {
+            loaded.get(booking.getItemId()).bookings.add(new BookingEntry(booking.getId(), booking.getBookerId(),
+                    booking.getItemId(), booking.getStart()));
+        }
+        for (Map.Entry<Integer, ItemBookings> entry : loaded.entrySet()) {
+            ItemBookings bookings = entry.getValue();
+            // Начавшихся бронирований нет - раньше головы списка ничего нет
+            bookings.complete = bookings.bookings.isEmpty() || !bookings.bookings.first().getStart().isBefore(now);
+            bookings.addNextAndLast(now, result);
+        }
+        // Подтверждение, зафиксированное после чтения, в загруженных списках отсутствует: такие списки отдаём
+        // только текущему запросу и в кэш не сохраняем
+        if (approvals.get() != version) {
+            return;
+        }
+        itemBookings.putAll(loaded);
+        // Подтверждение могло прийти между проверкой и сохранением, пока списков ещё не было в кэше
+        if (approvals.get() != version) {
+            loaded.forEach(itemBookings::remove);
+        }
+    }
+
+    private Map<Integer, Long> countApproved(List<Integer> itemIds) {
+        Map<Integer, Long> approved = new HashMap<>();
+        for (List<Integer> batch : InClauseBatches.partition(itemIds, inClauseBatchSize)) {
+            for (BookingCountDto count : bookingRepository.countAllForItems(batch, Status.APPROVED)) {
+                approved.put(count.getItemId(), count.getBookings());
+            }
+        }
+        return approved;
+    }
+
+    private void add(BookingEntry entry) {
+        approvals.incrementAndGet();
+        ItemBookings bookings = itemBookings.get(entry.getItemId());
+        if (bookings != null) {
+            bookings.add(entry);
+        }
+    }
+
+    private static BookingEntry key(LocalDateTime start, int id) {
+        return new BookingEntry(id, null, null, start);
+    }
+
+    private static class ItemBookings {
+        private final NavigableSet<BookingEntry> bookings = new TreeSet<>(ORDER);
+        private final long expiresAt;
+        // Список содержит все подтверждённые бронирования вещи, а не только начиная с головы
+        private boolean complete;
+        // Число подтверждённых бронирований вещи, включая удалённые из списка и не попавшие в него
+        private long approved;
+
+        ItemBookings(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.nanoTime() - expiresAt > 0;
+        }
+
+        synchronized boolean hasApproved(long count) {
+            return approved == count;
+        }
+
+        // false, если now раньше головы списка и последнее бронирование неизвестно
+        synchronized boolean addNextAndLast(LocalDateTime now, List<BookingDtoForOwnerItems> result) {
+            rollForward(now);
+            BookingEntry last = bookings.lower(key(now, Integer.MIN_VALUE));
+            if (last == null && !complete) {
+                return false;
+            }
+            if (last != null) {
+                // Из бронирований с одинаковым началом берём первое по id, как запрос к базе
+                result.add(bookings.ceiling(key(last.getStart(), Integer.MIN_VALUE)));
+            }
+            BookingEntry next = bookings.higher(key(now, Integer.MAX_VALUE));
+            if (next != null) {
+                result.add(next);
+            }
+            return true;
+        }
+
+        synchronized void add(BookingEntry entry) {
+            // Список, загруженный после фиксации подтверждения, уже учёл его
+            if (bookings.contains(entry)) {
+                return;
+            }
+            approved++;
+            // Бронирование раньше головы неполного списка не может стать ни следующим, ни последним
+            if (complete || bookings.isEmpty() || !entry.getStart().isBefore(bookings.first().getStart())) {
+                bookings.add(entry);
+            }
+        }
+
+        // Убираем бронирования, начавшиеся раньше последнего начавшегося
+        private void rollForward(LocalDateTime now) {
+            while (!bookings.isEmpty()) {
+                BookingEntry following = bookings.higher(key(bookings.first().getStart(), Integer.MAX_VALUE));
+                if (following == null || !following.getStart().isBefore(now)) {
+                    return;
+                }
+                bookings.pollFirst();
+                complete = false;
+            }
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static class BookingEntry implements BookingDtoForOwnerItems {
+        private final Integer id;
+        private final Integer bookerId;
+        private final Integer itemId;
+        private final LocalDateTime start;
+    }
+}
@@ -0,0 +1,36 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import ru.practicum.shareit.exceptions.ValidationException;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+@Data
+@AllArgsConstructor
+public class BookingCursor {
+    private LocalDateTime end;
+    private Integer id;
+
+    public static BookingCursor of(BookingDtoOut booking) {
+        return new BookingCursor(booking.getEnd(), booking.getId());
+    }
+
+    public static BookingCursor parse(String token) {
+        // Курсор имеет вид <end_date>,<id>, например 2030-01-01T10:00:00,15
+        String[] parts = token.split(",");
+        if (parts.length != 2) {
+            throw new ValidationException("Некорректный курсор: " + token);
+        }
+        try {
+            return new BookingCursor(LocalDateTime.parse(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new ValidationException("Некорректный курсор: " + token);
+        }
+    }
+
+    public String toToken() {
+        return end + "," + id;
+    }
+}
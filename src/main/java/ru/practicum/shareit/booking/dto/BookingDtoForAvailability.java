@@ -0,0 +1,5 @@
+package ru.practicum.shareit.booking.dto;
+
+public interface BookingDtoForAvailability extends BookingDtoForInterval {
+    Integer getItemId();
+}
@@ -0,0 +1,13 @@
+package ru.practicum.shareit.booking.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDateTime;
+
+public interface BookingDtoForOwnerItems extends BookingDtoForItem {
+    @JsonIgnore
+    Integer getItemId();
+
+    @JsonIgnore
+    LocalDateTime getStart();
+}
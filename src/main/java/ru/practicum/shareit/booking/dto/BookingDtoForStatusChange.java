@@ -0,0 +1,13 @@
+package ru.practicum.shareit.booking.dto;
+
+import ru.practicum.shareit.booking.model.Status;
+
+import java.time.LocalDateTime;
+
+public interface BookingDtoForStatusChange extends BookingDtoForOwnerItems {
+    Integer getOwnerId();
+
+    LocalDateTime getEnd();
+
+    Status getStatus();
+}
@@ -1,5 +1,6 @@
 package ru.practicum.shareit.booking.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -19,4 +20,16 @@ public class BookingDtoOut {
     private ItemDto item;
     private UserDto booker;
     private Status status;
+    // Сколько ожидающих бронирований отклонено при подтверждении; отдаётся в заголовке X-Rejected-Count
+    @JsonIgnore
+    private Integer rejectedCount;
+
+    // Конструктор для проекции в запросах списков бронирований: строки читаются сразу в DTO, без сущностей.
+    // requestId вещи в ответе о бронировании не заполняется, как и в BookingMapper
+    public BookingDtoOut(Integer id, LocalDateTime start, LocalDateTime end, Integer itemId, String itemName,
+                         String itemDescription, Boolean itemAvailable, Integer bookerId, String bookerName,
+                         String bookerEmail, Status status) {
+        this(id, start, end, new ItemDto(itemId, itemName, itemDescription, itemAvailable, null),
+                new UserDto(bookerId, bookerName, bookerEmail), status, null);
+    }
 }
@@ -0,0 +1,39 @@
+package ru.practicum.shareit.config;
+
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.ehcache.xml.XmlConfiguration;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import java.net.URI;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Кэш второго уровня Hibernate на Ehcache через JCache. Конфигурация берётся из ресурса hibernate.javax.cache.uri
+// (по умолчанию ehcache.xml). Провайдер JCache отдаёт один менеджер на URI конфигурации, и фабрики сессий с разными
+// базами (контексты в тестах) делили бы один кэш, поэтому каждая фабрика получает собственный менеджер.
+// Закрывается он вместе с фабрикой
+public class EhcacheRegionFactory extends JCacheRegionFactory {
+    private static final String DEFAULT_CONFIG = "ehcache.xml";
+    private static final AtomicInteger CACHE_MANAGERS = new AtomicInteger();
+
+    @Override
+    protected CacheManager resolveCacheManager(SessionFactoryOptions settings, Map properties) {
+        Object configName = properties.get(ConfigSettings.CONFIG_URI);
+        String resource = configName != null ? configName.toString() : DEFAULT_CONFIG;
+        URL config = EhcacheRegionFactory.class.getClassLoader().getResource(resource);
+        if (config == null) {
+            throw new CacheException("Не найдена конфигурация кэша " + resource);
+        }
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(
+                EhcacheCachingProvider.class.getName());
+        return provider.getCacheManager(URI.create("shareit:cache-" + CACHE_MANAGERS.incrementAndGet()),
+                new XmlConfiguration(config));
+    }
+}
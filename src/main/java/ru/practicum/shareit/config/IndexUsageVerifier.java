@@ -0,0 +1,148 @@
+package ru.practicum.shareit.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.BookingRepository;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.item.CommentRepository;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.request.ItemRequestRepository;
+
+import javax.persistence.EntityManager;
+
+import java.sql.Connection;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "shareit.index-check.enabled", havingValue = "true", matchIfMissing = true)
+public class IndexUsageVerifier {
+    // Индекс и вызов метода репозитория, запрос которого должен его использовать
+    private final Map<String, Runnable> hotQueries = new LinkedHashMap<>();
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final StatementRecorder statementRecorder;
+    private final boolean strict;
+
+    public IndexUsageVerifier(EntityManager entityManager,
+                              PlatformTransactionManager transactionManager,
+                              StatementRecorder statementRecorder,
+                              BookingRepository bookingRepository,
+                              ItemRepository itemRepository,
+                              CommentRepository commentRepository,
+                              ItemRequestRepository itemRequestRepository,
+                              @Value("${shareit.index-check.strict:false}") boolean strict) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.statementRecorder = statementRecorder;
+        this.strict = strict;
+        hotQueries.put("idx_bookings_booker_end", () -> bookingRepository.findAllByBookerId(0, PageRequest.of(0, 1)));
+        hotQueries.put("idx_bookings_item_end", () -> bookingRepository.findAllByItemOwnerId(0, PageRequest.of(0, 1)));
+        hotQueries.put("idx_bookings_item_status_dates",
+                () -> bookingRepository.findAllByItemIdAndStatusOrderByStartAsc(0, Status.APPROVED));
+        hotQueries.put("idx_items_owner", () -> itemRepository.findAllByOwnerId(0));
+        hotQueries.put("idx_items_request", () -> itemRepository.findAllByRequestId(0));
+        hotQueries.put("idx_comments_item", () -> commentRepository.findAllByItemId(0));
+        hotQueries.put("idx_requests_requestor_created",
+                () -> itemRequestRepository.findAllByRequestorIdOrderByCreatedDesc(0));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void verify() {
+        List<String> missing = findQueriesWithoutIndex();
+        if (missing.isEmpty()) {
+            log.info("Все основные запросы используют индексы: {}", hotQueries.keySet());
+            return;
+        }
+        if (strict) {
+            throw new IllegalStateException("Запросы не используют индексы: " + missing);
+        }
+        log.warn("Запросы не используют индексы: {}", missing);
+    }
+
+    public List<String> findQueriesWithoutIndex() {
+        List<String> missing = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            // Транзакция только читает, а откат отменяет и настройку планировщика
+            status.setRollbackOnly();
+            Session session = entityManager.unwrap(Session.class);
+            // Запросы должны дойти до базы, а не ответить из кэша запросов
+            session.setCacheMode(CacheMode.IGNORE);
+            session.doWork(connection -> {
+                // На почти пустых таблицах планировщик PostgreSQL выбирает полный просмотр
+                if ("PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("SET LOCAL enable_seqscan = off");
+                    }
+                }
+            });
+            for (Map.Entry<String, Runnable> query : hotQueries.entrySet()) {
+                // Проверяем ровно тот SQL, который Hibernate построил для метода репозитория
+                List<String> statements = statementRecorder.record(query.getValue());
+                String plan = statements.isEmpty() ? "" : session.doReturningWork(connection ->
+                        explain(connection, statements.get(0)));
+                if (!plan.contains(query.getKey())) {
+                    log.debug("План запроса {}: {}", statements, plan);
+                    missing.add(query.getKey());
+                }
+            }
+        });
+        return missing;
+    }
+
+    private String explain(Connection connection, String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            bindSampleParameters(statement);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1)).append('\n');
+                }
+            }
+        }
+        return plan.toString().toLowerCase(Locale.ROOT);
+    }
+
+    // PostgreSQL строит план только для заданных параметров, а null планировщик сворачивает в пустой результат
+    private static void bindSampleParameters(PreparedStatement statement) throws SQLException {
+        ParameterMetaData parameters = statement.getParameterMetaData();
+        for (int i = 1; i <= parameters.getParameterCount(); i++) {
+            switch (parameters.getParameterType(i)) {
+                case Types.CHAR:
+                case Types.VARCHAR:
+                    statement.setString(i, "");
+                    break;
+                case Types.TIMESTAMP:
+                    statement.setTimestamp(i, Timestamp.valueOf(LocalDateTime.now()));
+                    break;
+                case Types.BOOLEAN:
+                case Types.BIT:
+                    statement.setBoolean(i, true);
+                    break;
+                default:
+                    statement.setInt(i, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package ru.practicum.shareit.config;
+
+import com.zaxxer.hikari.SQLExceptionOverride;
+
+import java.sql.SQLException;
+
+// H2 сообщает о таймауте ожидания блокировки через SQLTimeoutException, и Hikari закрывает такое соединение
+// как сломанное - откатить на нём транзакцию, чтобы повторить её, уже нельзя
+public class LockTimeoutExceptionOverride implements SQLExceptionOverride {
+    private static final int H2_LOCK_TIMEOUT = 50200;
+
+    @java.lang.Override
+    public Override adjudicate(SQLException sqlException) {
+        return sqlException.getErrorCode() == H2_LOCK_TIMEOUT ? Override.DO_NOT_EVICT : Override.CONTINUE_EVICT;
+    }
+}
@@ -0,0 +1,33 @@
+package ru.practicum.shareit.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+// Снимки данных в памяти живут дольше запроса: загруженные из отстающей реплики, они хранили бы устаревшие
+// данные до следующей загрузки. Поэтому такие загрузки идут в основную базу в отдельной пишущей транзакции
+@Component
+public class PrimaryReads {
+    private final boolean replicaEnabled;
+    private final TransactionTemplate primaryTransaction;
+
+    public PrimaryReads(PlatformTransactionManager transactionManager,
+                        @Value("${shareit.datasource.replica.jdbc-url:}") String replicaUrl) {
+        this.replicaEnabled = replicaUrl != null && !replicaUrl.isEmpty();
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.primaryTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // Без реплики или в транзакции на основной базе читаем в текущей транзакции:
+    // вложенная заняла бы второе соединение из того же пула
+    public <T> T execute(Supplier<T> query) {
+        if (!replicaEnabled || !ReadOnlyRoutingDataSource.isReplicaRead()) {
+            return query.get();
+        }
+        return primaryTransaction.execute(status -> query.get());
+    }
+}
@@ -0,0 +1,31 @@
+package ru.practicum.shareit.config;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+// Оборачивает DataSource прокси, который считает выполненные запросы и их время отдельно для каждого потока.
+// Счётчики читаются через QueryCountHolder: в тестах и в QueryCountFilter. Обёртки над другими источниками
+// (LazyConnectionDataSourceProxy при настроенной реплике) пропускаются, чтобы запрос не считался дважды.
+// Включается только в профилях test и diagnostics
+@Component
+@ConditionalOnProperty(name = "shareit.query-count.enabled", havingValue = "true")
+public class QueryCountDataSourcePostProcessor implements BeanPostProcessor {
+    static final String DATA_SOURCE_NAME = "shareit";
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof ProxyDataSource) && !(bean instanceof DelegatingDataSource)) {
+            return ProxyDataSourceBuilder.create((DataSource) bean)
+                    .name(DATA_SOURCE_NAME)
+                    .countQuery()
+                    .build();
+        }
+        return bean;
+    }
+}
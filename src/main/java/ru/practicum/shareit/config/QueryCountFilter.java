@@ -0,0 +1,46 @@
+package ru.practicum.shareit.config;
+
+import net.ttddyy.dsproxy.QueryCount;
+import net.ttddyy.dsproxy.QueryCountHolder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// Вместе с прокси источника данных добавляет к ответу число запросов к базе и время их выполнения.
+// Тело ответа буферизуется, потому что заголовки можно выставить только до его отправки
+@Component
+@ConditionalOnProperty(name = "shareit.query-count.enabled", havingValue = "true")
+public class QueryCountFilter extends OncePerRequestFilter {
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        QueryCountHolder.clear();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, wrapper);
+        } finally {
+            QueryCount count = QueryCountHolder.getGrandTotal();
+            long total = System.nanoTime() - start;
+            wrapper.setHeader(QUERY_COUNT_HEADER, String.valueOf(count.getTotal()));
+            wrapper.setHeader(SERVER_TIMING_HEADER, String.format(Locale.ROOT,
+                    "db;dur=%d;desc=\"%d queries\", total;dur=%.1f",
+                    count.getTime(), count.getTotal(), total / (double) TimeUnit.MILLISECONDS.toNanos(1)));
+            QueryCountHolder.clear();
+            wrapper.copyBodyToResponse();
+        }
+    }
+}
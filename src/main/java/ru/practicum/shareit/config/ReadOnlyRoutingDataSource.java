@@ -0,0 +1,42 @@
+package ru.practicum.shareit.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+
+import java.util.Map;
+
+// Отдаёт соединения транзакций только для чтения из пула реплики, все остальные — из пула основной базы.
+// Признак readOnly появляется уже после того, как транзакция запросила соединение, поэтому источник
+// оборачивается в LazyConnectionDataSourceProxy: настоящее соединение берётся при первом запросе к базе
+public class ReadOnlyRoutingDataSource extends AbstractRoutingDataSource {
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+    enum Target {
+        PRIMARY, REPLICA
+    }
+
+    public ReadOnlyRoutingDataSource(DataSource primary, DataSource replica) {
+        setTargetDataSources(Map.<Object, Object>of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+    }
+
+    // Чтение своих записей: пока флаг выставлен, транзакции текущего потока читают из основной базы
+    public static void setPrimaryOnly(boolean primaryOnly) {
+        if (primaryOnly) {
+            PRIMARY_ONLY.set(true);
+        } else {
+            PRIMARY_ONLY.remove();
+        }
+    }
+
+    public static boolean isReplicaRead() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && PRIMARY_ONLY.get() == null;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return isReplicaRead() ? Target.REPLICA : Target.PRIMARY;
+    }
+}
@@ -0,0 +1,81 @@
+package ru.practicum.shareit.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Реплика отстаёт от основной базы, поэтому пользователь, который недавно что-то изменил, ещё
+// shareit.datasource.replica.read-your-writes читает из основной базы и видит свои изменения
+@Component
+@ConditionalOnProperty(name = "shareit.datasource.replica.jdbc-url")
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    static final String USER_HEADER = "X-Sharer-User-Id";
+
+    private final long windowNanos;
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+    public ReadYourWritesFilter(@Value("${shareit.datasource.replica.read-your-writes:5s}") Duration window) {
+        this.windowNanos = window.toNanos();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String userId = request.getHeader(USER_HEADER);
+        boolean write = !HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod());
+        ReadOnlyRoutingDataSource.setPrimaryOnly(write || wroteRecently(userId));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadOnlyRoutingDataSource.setPrimaryOnly(false);
+            if (write && userId != null) {
+                long now = System.nanoTime();
+                lastWrites.put(userId, now);
+                sweep(now);
+            }
+        }
+    }
+
+    int trackedUsers() {
+        return lastWrites.size();
+    }
+
+    // Раз в окно удаляем записи пользователей, которые больше ничего не читали: в словаре остаются только
+    // писавшие за последние два окна
+    private void sweep(long now) {
+        long previous = lastSweep.get();
+        if (now - previous >= windowNanos && lastSweep.compareAndSet(previous, now)) {
+            lastWrites.values().removeIf(lastWrite -> now - lastWrite >= windowNanos);
+        }
+    }
+
+    private boolean wroteRecently(String userId) {
+        if (userId == null) {
+            return false;
+        }
+        Long lastWrite = lastWrites.get(userId);
+        if (lastWrite == null) {
+            return false;
+        }
+        if (System.nanoTime() - lastWrite < windowNanos) {
+            return true;
+        }
+        // Окно прошло: запись больше не нужна
+        lastWrites.remove(userId, lastWrite);
+        return false;
+    }
+}
@@ -0,0 +1,41 @@
+package ru.practicum.shareit.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Запоминает SQL, который Hibernate готовит в текущем потоке, пока выполняется record
+@Component
+public class StatementRecorder implements StatementInspector, HibernatePropertiesCustomizer {
+    private final ThreadLocal<List<String>> statements = new ThreadLocal<>();
+
+    public List<String> record(Runnable action) {
+        List<String> recorded = new ArrayList<>();
+        statements.set(recorded);
+        try {
+            action.run();
+        } finally {
+            statements.remove();
+        }
+        return recorded;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        List<String> recorded = statements.get();
+        if (recorded != null) {
+            recorded.add(sql);
+        }
+        return sql;
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+    }
+}
@@ -0,0 +1,43 @@
+package ru.practicum.shareit.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Выполняет действие в отдельной транзакции и повторяет её со случайной экспоненциальной задержкой, если база не дала
+// блокировку или запись успел изменить другой запрос (версия @Version). Внутри уже начатой транзакции повторять нечего:
+// она помечена к откату, поэтому действие выполняется один раз
+@Component
+public class TransactionRetry {
+    private final TransactionTemplate transactionTemplate;
+    private final RetryTemplate retryTemplate;
+
+    public TransactionRetry(PlatformTransactionManager transactionManager,
+                            @Value("${shareit.retry.max-attempts:3}") int maxAttempts,
+                            @Value("${shareit.retry.delay:50ms}") Duration delay,
+                            @Value("${shareit.retry.max-delay:1s}") Duration maxDelay) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retryTemplate = RetryTemplate.builder()
+                .maxAttempts(maxAttempts)
+                .exponentialBackoff(delay.toMillis(), 2, maxDelay.toMillis(), true)
+                .retryOn(List.of(PessimisticLockingFailureException.class, OptimisticLockingFailureException.class))
+                .traversingCauses()
+                .build();
+    }
+
+    public <T> T execute(Supplier<T> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return action.get();
+        }
+        return retryTemplate.execute(context -> transactionTemplate.execute(status -> action.get()));
+    }
+}
@@ -0,0 +1,220 @@
+package ru.practicum.shareit.generator;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.model.Status;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+// Заполняет базу синтетическими данными при запуске с профилем generate. Строки вставляются пакетами JDBC,
+// id берутся из последовательностей блоками так же, как их выделяет Hibernate
+@Component
+@Profile("generate")
+@Slf4j
+@RequiredArgsConstructor
+@EnableConfigurationProperties(GeneratorProperties.class)
+public class DataGenerator implements ApplicationRunner {
+    // Шаг последовательностей из миграции V3, он же allocationSize в @SequenceGenerator сущностей
+    private static final int ID_ALLOCATION_SIZE = 50;
+    private static final String[] THINGS = {"дрель", "перфоратор", "лестница", "палатка", "велосипед", "шуруповёрт",
+        "байдарка", "проектор", "газонокосилка", "фотоаппарат", "самокат", "бензопила", "мангал", "спальник",
+        "штатив", "пылесос", "удочка", "коляска", "сноуборд", "генератор"};
+    private static final String[] QUALITIES = {"почти новая", "профессиональная", "компактная", "надёжная",
+        "лёгкая", "мощная", "складная", "детская"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final GeneratorProperties properties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        generate();
+    }
+
+    public void generate() {
+        SplittableRandom random = new SplittableRandom(properties.getSeed());
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        log.info("Генерация данных: {}", properties);
+        int[] userIds = insertUsers();
+        int[] requestIds = insertRequests(random, userIds, now);
+        int[][] items = insertItems(random, userIds, requestIds);
+        insertBookingsAndComments(random, userIds, items[0], items[1], now);
+    }
+
+    private int[] insertUsers() {
+        int[] ids = new int[properties.getUsers()];
+        SequenceIds sequence = new SequenceIds("users_seq");
+        try (BatchWriter writer = new BatchWriter("users", "insert into users (id, name, email) values (?, ?, ?)")) {
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = sequence.next();
+                writer.add(ids[i], "Пользователь " + ids[i], "user" + ids[i] + "@generated.shareit");
+            }
+        }
+        return ids;
+    }
+
+    private int[] insertRequests(SplittableRandom random, int[] userIds, LocalDateTime now) {
+        int[] ids = new int[properties.getRequests()];
+        SequenceIds sequence = new SequenceIds("requests_seq");
+        try (BatchWriter writer = new BatchWriter("requests",
+                "insert into requests (id, description, requestor_id, created_date) values (?, ?, ?, ?)")) {
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = sequence.next();
+                writer.add(ids[i], "Нужна " + THINGS[random.nextInt(THINGS.length)] + " на выходные",
+                        userIds[random.nextInt(userIds.length)],
+                        Timestamp.valueOf(now.minusHours(random.nextInt(properties.getPastDays() * 24) + 1)));
+            }
+        }
+        return ids;
+    }
+
+    // Владелец выбирается по Ципфу: у первых пользователей тысячи вещей, у большинства одна-две или ни одной
+    private int[][] insertItems(SplittableRandom random, int[] userIds, int[] requestIds) {
+        int[] ids = new int[properties.getItems()];
+        int[] owners = new int[ids.length];
+        ZipfDistribution ownerRanks = new ZipfDistribution(userIds.length, properties.getZipfExponent());
+        SequenceIds sequence = new SequenceIds("items_seq");
+        try (BatchWriter writer = new BatchWriter("items", "insert into items "
+                + "(id, name, description, is_available, owner_id, request_id) values (?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = sequence.next();
+                owners[i] = userIds[ownerRanks.sample(random)];
+                String thing = THINGS[random.nextInt(THINGS.length)];
+                Integer requestId = requestIds.length > 0 && random.nextDouble() < properties.getItemsForRequests()
+                        ? requestIds[random.nextInt(requestIds.length)] : null;
+                writer.add(ids[i], thing + " " + ids[i],
+                        QUALITIES[random.nextInt(QUALITIES.length)] + " " + thing + ", бронь от суток",
+                        random.nextInt(10) != 0, owners[i], requestId);
+            }
+        }
+        return new int[][]{ids, owners};
+    }
+
+    // Популярность вещей распределена по Ципфу, бронирования равномерно покрывают прошлое, настоящее и будущее.
+    // Подтверждённые бронирования одной вещи не пересекаются, как и в данных, созданных через сервис
+    private void insertBookingsAndComments(SplittableRandom random, int[] userIds, int[] itemIds, int[] owners,
+                                           LocalDateTime now) {
+        ZipfDistribution itemRanks = new ZipfDistribution(itemIds.length, properties.getZipfExponent());
+        LocalDateTime origin = now.minusDays(properties.getPastDays());
+        int spanHours = (properties.getPastDays() + properties.getFutureDays()) * 24;
+        SequenceIds bookingIds = new SequenceIds("bookings_seq");
+        SequenceIds commentIds = new SequenceIds("comments_seq");
+        Map<Integer, NavigableMap<LocalDateTime, LocalDateTime>> approvedIntervals = new HashMap<>();
+        try (BatchWriter bookings = new BatchWriter("bookings",
+                "insert into bookings (id, start_date, end_date, item_id, booker_id, status) values (?, ?, ?, ?, ?, ?)");
+             BatchWriter comments = new BatchWriter("comments",
+                     "insert into comments (id, text, item_id, author_id, created_date) values (?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < properties.getBookings(); i++) {
+                int item = itemRanks.sample(random);
+                // Владелец не бронирует свою вещь
+                int booker = userIds[random.nextInt(userIds.length)];
+                while (booker == owners[item] && userIds.length > 1) {
+                    booker = userIds[random.nextInt(userIds.length)];
+                }
+                LocalDateTime start = origin.plusHours(random.nextInt(spanHours));
+                LocalDateTime end = start.plusHours(1 + random.nextInt(14 * 24));
+                Status status = status(random, start, end, now);
+                if (status == Status.APPROVED) {
+                    NavigableMap<LocalDateTime, LocalDateTime> intervals = approvedIntervals.computeIfAbsent(item,
+                            key -> new TreeMap<>());
+                    Map.Entry<LocalDateTime, LocalDateTime> previous = intervals.lowerEntry(end);
+                    if (previous != null && previous.getValue().isAfter(start)) {
+                        // Вещь уже занята: будущее бронирование ждёт ответа владельца, остальные отклонены
+                        status = start.isAfter(now) ? Status.WAITING : Status.REJECTED;
+                    } else {
+                        intervals.put(start, end);
+                    }
+                }
+                bookings.add(bookingIds.next(), Timestamp.valueOf(start), Timestamp.valueOf(end), itemIds[item],
+                        booker, status.name());
+                if (status == Status.APPROVED && end.isBefore(now) && random.nextDouble() < properties.getComments()) {
+                    LocalDateTime created = end.plusHours(random.nextInt(72));
+                    comments.add(commentIds.next(), "Всё работает, спасибо!", itemIds[item], booker,
+                            Timestamp.valueOf(created.isAfter(now) ? now : created));
+                }
+            }
+        }
+    }
+
+    private Status status(SplittableRandom random, LocalDateTime start, LocalDateTime end, LocalDateTime now) {
+        int roll = random.nextInt(10);
+        if (end.isBefore(now)) {
+            return roll < 8 ? Status.APPROVED : roll < 9 ? Status.REJECTED : Status.CANCELED;
+        } else if (start.isBefore(now)) {
+            return Status.APPROVED;
+        } else {
+            return roll < 6 ? Status.APPROVED : roll < 9 ? Status.WAITING : Status.REJECTED;
+        }
+    }
+
+    // Выделяет id блоками по ID_ALLOCATION_SIZE: одно обращение к последовательности на блок
+    private class SequenceIds {
+        private final String sequence;
+        private int next;
+        private int limit;
+
+        SequenceIds(String sequence) {
+            this.sequence = sequence;
+        }
+
+        int next() {
+            if (next == limit) {
+                next = jdbcTemplate.queryForObject("select nextval('" + sequence + "')", Integer.class);
+                limit = next + ID_ALLOCATION_SIZE;
+            }
+            return next++;
+        }
+    }
+
+    private class BatchWriter implements AutoCloseable {
+        private final String table;
+        private final String sql;
+        private final List<Object[]> rows = new ArrayList<>();
+        private long written;
+
+        BatchWriter(String table, String sql) {
+            this.table = table;
+            this.sql = sql;
+        }
+
+        void add(Object... row) {
+            rows.add(row);
+            if (rows.size() == properties.getBatchSize()) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (rows.isEmpty()) {
+                return;
+            }
+            jdbcTemplate.batchUpdate(sql, rows);
+            long before = written;
+            written += rows.size();
+            rows.clear();
+            if (written / 1_000_000 != before / 1_000_000) {
+                log.info("{}: вставлено {} строк", table, written);
+            }
+        }
+
+        @Override
+        public void close() {
+            flush();
+            log.info("{}: всего вставлено {} строк", table, written);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ru.practicum.shareit.generator;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.generate")
+public class GeneratorProperties {
+    private int users = 100_000;
+    private int items = 1_000_000;
+    private int bookings = 5_000_000;
+    private int requests = 100_000;
+    // Доля вещей, созданных в ответ на запрос
+    private double itemsForRequests = 0.05;
+    // Доля завершённых подтверждённых бронирований с отзывом
+    private double comments = 0.2;
+    // Показатель распределения Ципфа для числа вещей у владельца и популярности вещей
+    private double zipfExponent = 1.0;
+    private int pastDays = 365;
+    private int futureDays = 90;
+    private int batchSize = 1000;
+    private long seed = 42;
+}
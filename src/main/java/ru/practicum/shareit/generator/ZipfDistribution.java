@@ -0,0 +1,26 @@
+package ru.practicum.shareit.generator;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Ранги 0..n-1, вероятность ранга k пропорциональна 1 / (k + 1)^exponent
+class ZipfDistribution {
+    private final double[] cumulative;
+
+    ZipfDistribution(int n, double exponent) {
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+
+    int sample(SplittableRandom random) {
+        int position = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(position >= 0 ? position : -position - 1, cumulative.length - 1);
+    }
+}
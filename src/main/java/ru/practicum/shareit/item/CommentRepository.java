@@ -1,10 +1,16 @@
 package ru.practicum.shareit.item;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import ru.practicum.shareit.item.model.Comment;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface CommentRepository extends JpaRepository<Comment, Integer> {
+    @Query("select c from Comment c join fetch c.author where c.item.id = ?1")
     List<Comment> findAllByItemId(int itemId);
+
+    @Query("select c from Comment c join fetch c.author where c.item.id in ?1 order by c.item.id, c.created")
+    List<Comment> findAllByItemIdIn(Collection<Integer> itemIds);
 }
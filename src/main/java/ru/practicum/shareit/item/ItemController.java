@@ -1,16 +1,23 @@
 package ru.practicum.shareit.item;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemDtoWithDates;
 import ru.practicum.shareit.item.model.Comment;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.List;
 
 @RestController
+@Timed(histogram = true)
 @RequestMapping("/items")
 @RequiredArgsConstructor
 public class ItemController {
@@ -39,14 +46,32 @@ public class ItemController {
     public ResponseEntity<Collection<ItemDtoWithDates>> getAllItems(@RequestHeader("X-Sharer-User-Id") int userId,
                                                                     @RequestParam(required = false) Integer from,
                                                                     @RequestParam(required = false) Integer size) {
-        return ResponseEntity.ok().body(itemService.getAllItems(userId, from, size));
+        Slice<ItemDtoWithDates> items = itemService.getAllItems(userId, from, size);
+        return ResponseEntity.ok().header("X-Has-More", String.valueOf(items.hasNext())).body(items.getContent());
     }
 
     @GetMapping("/search")
     public ResponseEntity<Collection<ItemDto>> searchItems(@RequestParam(defaultValue = "") String text,
                                                            @RequestParam(required = false) Integer from,
                                                            @RequestParam(required = false) Integer size) {
-        return ResponseEntity.ok().body(itemService.searchItems(text, from, size));
+        Slice<ItemDto> items = itemService.searchItems(text, from, size);
+        return ResponseEntity.ok().header("X-Has-More", String.valueOf(items.hasNext())).body(items.getContent());
+    }
+
+    @GetMapping("/{itemId}/availability")
+    public ResponseEntity<ItemAvailabilityDto> getAvailability(@PathVariable int itemId,
+                                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                               @RequestParam(defaultValue = "false") boolean includeWaiting) {
+        return ResponseEntity.ok().body(itemService.getAvailability(itemId, from, to, includeWaiting));
+    }
+
+    @GetMapping("/availability")
+    public ResponseEntity<List<ItemAvailabilityDto>> getAvailability(@RequestParam List<Integer> ids,
+                                                                     @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                                                                     @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                                                                     @RequestParam(defaultValue = "false") boolean includeWaiting) {
+        return ResponseEntity.ok().body(itemService.getAvailability(ids, from, to, includeWaiting));
     }
 
     @PostMapping("/{itemId}/comment")
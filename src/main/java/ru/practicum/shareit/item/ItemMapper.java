@@ -17,6 +17,7 @@ public interface ItemMapper {
     @Mapping(target = "id", source = "itemDto.id")
     @Mapping(target = "name", source = "itemDto.name")
     @Mapping(target = "request.id", source = "itemDto.requestId")
+    @Mapping(target = "version", ignore = true)
     Item toItem(ItemDto itemDto, UserDto owner);
 
     @Mapping(target = "requestId", source = "item.request.id")
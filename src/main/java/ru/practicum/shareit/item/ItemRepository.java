@@ -1,27 +1,60 @@
 package ru.practicum.shareit.item;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import ru.practicum.shareit.item.dto.ItemDtoForSearchIndex;
+import ru.practicum.shareit.item.dto.ItemVersionDto;
 import ru.practicum.shareit.item.model.Item;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+
+import java.util.Collection;
 import java.util.List;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
 public interface ItemRepository extends JpaRepository<Item, Integer> {
-    @Query(" select i from Item i " +
-            "where (upper(i.name) like upper(concat('%', ?1, '%')) " +
-            " or upper(i.description) like upper(concat('%', ?1, '%'))) and i.available = true")
-    List<Item> search(String text);
+    // Недоступные вещи тоже читаются: их версии нужны, чтобы заметить, что вещь снова стала доступной
+    @Query("select i.id as id, i.version as version, i.name as name, i.description as description, " +
+            "i.available as available, r.id as requestId from Item i left join i.request r")
+    List<ItemDtoForSearchIndex> findAllForSearchIndex();
+
+    @Query("select i.id as id, i.version as version, i.name as name, i.description as description, " +
+            "i.available as available, r.id as requestId from Item i left join i.request r where i.id in ?1")
+    List<ItemDtoForSearchIndex> findAllForSearchIndexByIdIn(Collection<Integer> ids);
 
-    @Query(" select i from Item i " +
-            "where (upper(i.name) like upper(concat('%', ?1, '%')) " +
-            " or upper(i.description) like upper(concat('%', ?1, '%'))) and i.available = true")
-    Page<Item> search(String text, Pageable pageable);
+    @Query("select i.id as id, i.version as version from Item i")
+    List<ItemVersionDto> findAllVersions();
 
+    // Связи ленивые, а id запроса для ItemDto берётся из внешнего ключа без загрузки самого запроса.
+    // Результаты кэшируются до первого изменения таблицы items, сами вещи берутся из кэша второго уровня
+    // Условие по внешнему ключу: производный запрос соединял бы таблицу владельца и фильтровал по её id
+    @Query("select i from Item i where i.owner.id = ?1")
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
     List<Item> findAllByOwnerId(int userId);
 
-    Page<Item> findAllByOwnerId(int userId, Pageable pageable);
+    @Query("select i from Item i where i.owner.id = ?1")
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    Slice<Item> findAllByOwnerId(int userId, Pageable pageable);
 
+    @Query("select i from Item i where i.request.id = ?1")
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
     List<Item> findAllByRequestId(int requestId);
+
+    @Query("select i from Item i where i.request.id in ?1")
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    List<Item> findAllByRequestIdIn(Collection<Integer> requestIds);
+
+    long countByIdIn(Collection<Integer> ids);
+
+    // SELECT ... FOR UPDATE: строки вещей заблокированы до конца транзакции для всех экземпляров приложения.
+    // Строки блокируются по возрастанию id, поэтому экземпляры берут общие строки в одном порядке
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select i from Item i where i.id in ?1 order by i.id")
+    List<Item> findAllByIdInForUpdate(Collection<Integer> itemIds);
 }
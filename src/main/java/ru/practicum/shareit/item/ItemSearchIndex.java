@@ -0,0 +1,329 @@
+package ru.practicum.shareit.item;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemDtoForSearchIndex;
+import ru.practicum.shareit.item.dto.ItemVersionDto;
+import ru.practicum.shareit.util.InClauseBatches;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+@Component
+@Slf4j
+public class ItemSearchIndex {
+    private static final int GRAM = 3;
+
+    private final ItemRepository itemRepository;
+    private final TransactionTemplate loadTransaction;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Только доступные вещи: недоступные поиск не возвращает
+    private final NavigableMap<Integer, Document> documents = new TreeMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    // Версии всех вещей, прочитанные из базы. Вещи, изменённые этим экземпляром, удаляются, чтобы обновление
+    // перечитало их с новой версией
+    private final Map<Integer, Long> versions = new HashMap<>();
+    private final int inClauseBatchSize;
+    private volatile boolean loaded;
+
+    public ItemSearchIndex(ItemRepository itemRepository, PlatformTransactionManager transactionManager,
+                           @Value("${shareit.in-clause-batch-size:500}") int inClauseBatchSize) {
+        this.itemRepository = itemRepository;
+        this.inClauseBatchSize = inClauseBatchSize;
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        // Не только для чтения: такая транзакция ушла бы в реплику, и индекс построился бы по отставшим данным
+        this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // Возвращает доступные вещи, в названии или описании которых есть text без учёта регистра, в порядке id
+    public List<ItemDto> search(String text) {
+        return find(text, 0, Integer.MAX_VALUE);
+    }
+
+    public Slice<ItemDto> search(String text, Pageable pageable) {
+        // Лишний элемент показывает, есть ли следующая страница
+        List<ItemDto> items = find(text, pageable.getOffset(), pageable.getPageSize() + 1);
+        boolean hasNext = items.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? items.subList(0, pageable.getPageSize()) : items, pageable, hasNext);
+    }
+
+    // Индекс строится при старте, а не при первом изменении вещи: иначе загрузка шла бы внутри транзакции
+    // создания вещи и занимала бы второе соединение
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        ensureLoaded();
+    }
+
+    private List<ItemDto> find(String text, long offset, int limit) {
+        // Запрос, пришедший до окончания старта, строит индекс сам. Поиск выполняется вне транзакции
+        ensureLoaded();
+        String query = text.toUpperCase(Locale.ROOT);
+        lock.readLock().lock();
+        try {
+            PrimitiveIterator.OfInt candidates = query.length() < GRAM
+                    ? documents.keySet().stream().mapToInt(Integer::intValue).iterator()
+                    : findCandidates(query).iterator();
+            List<ItemDto> result = new ArrayList<>();
+            long skipped = 0;
+            while (candidates.hasNext()) {
+                Document document = documents.get(candidates.nextInt());
+                // Совпадение всех триграмм не гарантирует вхождения подстроки, поэтому кандидатов проверяем
+                if (!document.matches(query)) {
+                    continue;
+                }
+                if (skipped < offset) {
+                    skipped++;
+                } else if (result.size() < limit) {
+                    result.add(document.toItemDto());
+                } else {
+                    break;
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void index(ItemDto item) {
+        Document document = Boolean.TRUE.equals(item.getAvailable()) ? new Document(item) : null;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(item.getId(), document);
+            return;
+        }
+        // Изменение попадает в индекс только после фиксации, откатывать индекс не нужно
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply(item.getId(), document);
+            }
+        });
+    }
+
+    private void apply(int id, Document document) {
+        lock.writeLock().lock();
+        try {
+            // Ещё не построенный индекс прочитает зафиксированное изменение из базы
+            if (loaded) {
+                put(id, document);
+                versions.remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                // Читаем в отдельной транзакции, чтобы в индекс не попали незафиксированные изменения
+                List<ItemDtoForSearchIndex> items = loadTransaction.execute(status ->
+                        itemRepository.findAllForSearchIndex());
+                for (ItemDtoForSearchIndex item : items) {
+                    putLoaded(item);
+                }
+                loaded = true;
+                log.info("Поисковый индекс построен, вещей: {}, триграмм: {}", documents.size(), postings.size());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Вещи меняют и другие экземпляры приложения. Обновление сравнивает версии вещей с базой и перечитывает
+    // только изменённые, а удалённые из базы убирает
+    @Scheduled(fixedDelayString = "${shareit.search-index.refresh-interval:PT1M}",
+            initialDelayString = "${shareit.search-index.refresh-interval:PT1M}")
+    public void refresh() {
+        if (!loaded) {
+            return;
+        }
+        List<ItemVersionDto> current = loadTransaction.execute(status -> itemRepository.findAllVersions());
+        List<Integer> changed = new ArrayList<>();
+        Set<Integer> removed;
+        lock.readLock().lock();
+        try {
+            removed = new HashSet<>(versions.keySet());
+            for (ItemVersionDto item : current) {
+                removed.remove(item.getId());
+                if (!item.getVersion().equals(versions.get(item.getId()))) {
+                    changed.add(item.getId());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        List<ItemDtoForSearchIndex> items = new ArrayList<>();
+        for (List<Integer> batch : InClauseBatches.partition(changed, inClauseBatchSize)) {
+            items.addAll(loadTransaction.execute(status -> itemRepository.findAllForSearchIndexByIdIn(batch)));
+        }
+        lock.writeLock().lock();
+        try {
+            for (ItemDtoForSearchIndex item : items) {
+                putLoaded(item);
+            }
+            for (Integer id : removed) {
+                put(id, null);
+                versions.remove(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.debug("Поисковый индекс обновлён, изменено вещей: {}, удалено: {}", items.size(), removed.size());
+    }
+
+    private void putLoaded(ItemDtoForSearchIndex item) {
+        ItemDto itemDto = new ItemDto(item.getId(), item.getName(), item.getDescription(), item.getAvailable(),
+                item.getRequestId());
+        put(item.getId(), Boolean.TRUE.equals(item.getAvailable()) ? new Document(itemDto) : null);
+        versions.put(item.getId(), item.getVersion());
+    }
+
+    private void put(int id, Document document) {
+        Document previous = document == null ? documents.remove(id) : documents.put(id, document);
+        if (previous != null) {
+            for (long gram : previous.grams()) {
+                Postings list = postings.get(gram);
+                list.remove(id);
+                if (list.size == 0) {
+                    postings.remove(gram);
+                }
+            }
+        }
+        if (document != null) {
+            for (long gram : document.grams()) {
+                postings.computeIfAbsent(gram, key -> new Postings()).add(id);
+            }
+        }
+    }
+
+    private IntStream findCandidates(String query) {
+        long[] grams = grams(query);
+        List<Postings> lists = new ArrayList<>(grams.length);
+        for (long gram : grams) {
+            Postings list = postings.get(gram);
+            if (list == null) {
+                return IntStream.empty();
+            }
+            lists.add(list);
+        }
+        // Пересечение начинаем с самого короткого списка
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        int[] candidates = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+        int count = candidates.length;
+        for (int i = 1; i < lists.size() && count > 0; i++) {
+            count = intersect(candidates, count, lists.get(i));
+        }
+        return IntStream.of(candidates).limit(count);
+    }
+
+    private static int intersect(int[] candidates, int count, Postings list) {
+        int result = 0;
+        int j = 0;
+        for (int i = 0; i < count && j < list.size; i++) {
+            while (j < list.size && list.ids[j] < candidates[i]) {
+                j++;
+            }
+            if (j < list.size && list.ids[j] == candidates[i]) {
+                candidates[result++] = candidates[i];
+            }
+        }
+        return result;
+    }
+
+    private static long[] grams(String... texts) {
+        return Arrays.stream(texts)
+                .flatMapToLong(text -> IntStream.rangeClosed(0, text.length() - GRAM)
+                        .mapToLong(i -> (long) text.charAt(i) << 32 | (long) text.charAt(i + 1) << 16 | text.charAt(i + 2)))
+                .distinct()
+                .toArray();
+    }
+
+    private static class Document {
+        private final ItemDto item;
+        private final String name;
+        private final String description;
+
+        Document(ItemDto item) {
+            this.item = new ItemDto(item.getId(), item.getName(), item.getDescription(), item.getAvailable(),
+                    item.getRequestId());
+            this.name = item.getName().toUpperCase(Locale.ROOT);
+            // Описание в базе необязательно
+            this.description = item.getDescription() == null ? "" : item.getDescription().toUpperCase(Locale.ROOT);
+        }
+
+        long[] grams() {
+            return ItemSearchIndex.grams(name, description);
+        }
+
+        boolean matches(String query) {
+            return name.contains(query) || description.contains(query);
+        }
+
+        ItemDto toItemDto() {
+            return new ItemDto(item.getId(), item.getName(), item.getDescription(), item.getAvailable(),
+                    item.getRequestId());
+        }
+    }
+
+    // Отсортированный по возрастанию список id вещей, содержащих триграмму
+    private static class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        void remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+                size--;
+            }
+        }
+    }
+}
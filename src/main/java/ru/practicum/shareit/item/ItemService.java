@@ -1,13 +1,17 @@
 package ru.practicum.shareit.item;
 
+import org.springframework.data.domain.Slice;
 import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemDtoWithDates;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface ItemService {
 
@@ -19,11 +23,20 @@ public interface ItemService {
 
     Item getItemForBooking(int itemId);
 
-    Collection<ItemDtoWithDates> getAllItems(int userId, Integer from, Integer size);
+    Map<Integer, Item> getItemsForBooking(Collection<Integer> itemIds);
 
-    Collection<ItemDto> searchItems(String text, Integer from, Integer size);
+    Slice<ItemDtoWithDates> getAllItems(int userId, Integer from, Integer size);
+
+    Slice<ItemDto> searchItems(String text, Integer from, Integer size);
 
     CommentDto createComment(Comment comment, int itemId, int userId);
 
     List<ItemDto> findByRequestId(int requestId);
+
+    Map<Integer, List<ItemDto>> findByRequestIds(Collection<Integer> requestIds);
+
+    ItemAvailabilityDto getAvailability(int itemId, LocalDateTime from, LocalDateTime to, boolean includeWaiting);
+
+    List<ItemAvailabilityDto> getAvailability(List<Integer> itemIds, LocalDateTime from, LocalDateTime to,
+                                              boolean includeWaiting);
 }
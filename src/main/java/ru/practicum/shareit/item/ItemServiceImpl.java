@@ -1,33 +1,44 @@
 package ru.practicum.shareit.item;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.booking.BookingService;
 import ru.practicum.shareit.booking.dto.BookingDtoForItem;
+import ru.practicum.shareit.booking.dto.BookingDtoForOwnerItems;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.config.TransactionRetry;
 import ru.practicum.shareit.exceptions.ObjectNotFoundException;
 import ru.practicum.shareit.exceptions.ValidationException;
+import ru.practicum.shareit.item.dto.AvailabilityWindowDto;
 import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemDtoWithDates;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.UserService;
+import ru.practicum.shareit.util.InClauseBatches;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 @Transactional
 public class ItemServiceImpl implements ItemService {
     private final ItemRepository itemRepository;
@@ -36,6 +47,28 @@ public class ItemServiceImpl implements ItemService {
     private final BookingService bookingService;
     private final CommentRepository commentRepository;
     private final CommentMapper commentMapper;
+    private final ItemSearchIndex itemSearchIndex;
+    private final TransactionRetry transactionRetry;
+    private final int inClauseBatchSize;
+    private final int availabilityMaxSize;
+
+    public ItemServiceImpl(ItemRepository itemRepository, UserService userService, ItemMapper itemMapper,
+                           BookingService bookingService, CommentRepository commentRepository,
+                           CommentMapper commentMapper, ItemSearchIndex itemSearchIndex,
+                           TransactionRetry transactionRetry,
+                           @Value("${shareit.in-clause-batch-size:500}") int inClauseBatchSize,
+                           @Value("${shareit.availability.max-size:1000}") int availabilityMaxSize) {
+        this.itemRepository = itemRepository;
+        this.userService = userService;
+        this.itemMapper = itemMapper;
+        this.bookingService = bookingService;
+        this.commentRepository = commentRepository;
+        this.commentMapper = commentMapper;
+        this.itemSearchIndex = itemSearchIndex;
+        this.transactionRetry = transactionRetry;
+        this.inClauseBatchSize = inClauseBatchSize;
+        this.availabilityMaxSize = availabilityMaxSize;
+    }
 
     @Override
     public ItemDto createItem(ItemDto itemDto, int userId) {
@@ -44,11 +77,19 @@ public class ItemServiceImpl implements ItemService {
         if (item.getRequest().getId() == null) {
             item.setRequest(null);
         }
-        return itemMapper.toItemDto(itemRepository.save(item));
+        ItemDto savedItem = itemMapper.toItemDto(itemRepository.save(item));
+        itemSearchIndex.index(savedItem);
+        return savedItem;
     }
 
+    // Одновременное изменение вещи обнаруживается по версии, и транзакция повторяется на свежих данных
     @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
     public ItemDto updateItem(int itemId, ItemDto itemDto, int userId) {
+        return transactionRetry.execute(() -> doUpdateItem(itemId, itemDto, userId));
+    }
+
+    private ItemDto doUpdateItem(int itemId, ItemDto itemDto, int userId) {
         Optional<Item> opItem = itemRepository.findById(itemId);
         Item itemFromDB = null;
         if (opItem.isPresent()) {
@@ -71,21 +112,32 @@ public class ItemServiceImpl implements ItemService {
             log.info("Вещь с id {} не найдена.", itemId);
             throw new ObjectNotFoundException("Вещь не найдена");
         }
-        return itemMapper.toItemDto(itemRepository.save(itemFromDB));
+        ItemDto savedItem = itemMapper.toItemDto(itemRepository.save(itemFromDB));
+        itemSearchIndex.index(savedItem);
+        return savedItem;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public ItemDtoWithDates getItem(int itemId, int userId) {
         Optional<Item> opItem = itemRepository.findById(itemId);
         if (opItem.isPresent()) {
             Item item = opItem.get();
             ItemDtoWithDates itemDtoWithDates = itemMapper.toItemDtoWithDates(item);
             if (item.getOwner().getId() == userId) {
+                // Следующее и последнее бронирования одним обращением: кэш сверяет запись с базой один раз
                 LocalDateTime now = LocalDateTime.now();
-                BookingDtoForItem nextBooking = bookingService.getNextBooking(item.getId(), now, Status.APPROVED);
-                BookingDtoForItem lastBooking = bookingService.getLastBooking(item.getId(), now, Status.APPROVED);
-                itemDtoWithDates.setLastBooking(lastBooking);
-                itemDtoWithDates.setNextBooking(nextBooking);
+                for (BookingDtoForOwnerItems booking
+                        : bookingService.getNextAndLastBookings(List.of(item.getId()), now, Status.APPROVED)) {
+                    // Из бронирований с одинаковым началом берём первое по id, как для страницы вещей
+                    if (booking.getStart().isAfter(now)) {
+                        if (itemDtoWithDates.getNextBooking() == null) {
+                            itemDtoWithDates.setNextBooking(booking);
+                        }
+                    } else if (itemDtoWithDates.getLastBooking() == null) {
+                        itemDtoWithDates.setLastBooking(booking);
+                    }
+                }
             } else {
                 itemDtoWithDates.setLastBooking(null);
                 itemDtoWithDates.setNextBooking(null);
@@ -99,6 +151,7 @@ public class ItemServiceImpl implements ItemService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Item getItemForBooking(int itemId) {
         Optional<Item> opItem = itemRepository.findById(itemId);
         if (opItem.isPresent()) {
@@ -109,45 +162,77 @@ public class ItemServiceImpl implements ItemService {
         }
     }
 
+    // Вещи пакета бронирований одним запросом на каждую часть списка; отсутствующих вещей в результате нет
     @Override
-    public Collection<ItemDtoWithDates> getAllItems(int userId, Integer from, Integer size) {
-        List<Item> items;
+    @Transactional(readOnly = true)
+    public Map<Integer, Item> getItemsForBooking(Collection<Integer> itemIds) {
+        List<Integer> ids = new ArrayList<>(itemIds);
+        Map<Integer, Item> items = new HashMap<>();
+        for (List<Integer> batch : InClauseBatches.partition(ids, inClauseBatchSize)) {
+            for (Item item : itemRepository.findAllById(batch)) {
+                items.put(item.getId(), item);
+            }
+        }
+        return items;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<ItemDtoWithDates> getAllItems(int userId, Integer from, Integer size) {
+        Slice<Item> items;
         if (from == null || size == null) {
-            items = itemRepository.findAllByOwnerId(userId);
+            items = new SliceImpl<>(itemRepository.findAllByOwnerId(userId));
         } else {
             validatePageParams(from, size);
             int pageNumber = from / size;
             Pageable pageable = PageRequest.of(pageNumber, size);
-            items = itemRepository.findAllByOwnerId(userId, pageable).toList();
+            items = itemRepository.findAllByOwnerId(userId, pageable);
+        }
+        if (!items.hasContent()) {
+            return items.map(itemMapper::toItemDtoWithDates);
         }
-        List<ItemDtoWithDates> itemDtoWithDatesList = new ArrayList<>();
+        // Бронирования и отзывы загружаем одним запросом на всю страницу вещей
+        List<Integer> itemIds = items.map(Item::getId).getContent();
         LocalDateTime now = LocalDateTime.now();
-        for (Item item : items) {
-            BookingDtoForItem nextBooking = bookingService.getNextBooking(item.getId(), now, Status.APPROVED);
-            BookingDtoForItem lastBooking = bookingService.getLastBooking(item.getId(), now, Status.APPROVED);
-            ItemDtoWithDates itemDtoWithDates = itemMapper.toItemDtoWithDates(item);
-            itemDtoWithDates.setLastBooking(lastBooking);
-            itemDtoWithDates.setNextBooking(nextBooking);
-            itemDtoWithDates.setComments(commentMapper.toCommentDto(commentRepository.findAllByItemId(item.getId())));
-            itemDtoWithDatesList.add(itemDtoWithDates);
+        Map<Integer, BookingDtoForItem> nextBookings = new HashMap<>();
+        Map<Integer, BookingDtoForItem> lastBookings = new HashMap<>();
+        for (BookingDtoForOwnerItems booking : bookingService.getNextAndLastBookings(itemIds, now, Status.APPROVED)) {
+            if (booking.getStart().isAfter(now)) {
+                nextBookings.putIfAbsent(booking.getItemId(), booking);
+            } else {
+                lastBookings.putIfAbsent(booking.getItemId(), booking);
+            }
         }
-        return itemDtoWithDatesList;
+        Map<Integer, List<Comment>> comments = new HashMap<>();
+        for (List<Integer> batch : InClauseBatches.partition(itemIds, inClauseBatchSize)) {
+            for (Comment comment : commentRepository.findAllByItemIdIn(batch)) {
+                comments.computeIfAbsent(comment.getItem().getId(), id -> new ArrayList<>()).add(comment);
+            }
+        }
+        return items.map(item -> {
+            ItemDtoWithDates itemDtoWithDates = itemMapper.toItemDtoWithDates(item);
+            itemDtoWithDates.setLastBooking(lastBookings.get(item.getId()));
+            itemDtoWithDates.setNextBooking(nextBookings.get(item.getId()));
+            itemDtoWithDates.setComments(commentMapper.toCommentDto(
+                    comments.getOrDefault(item.getId(), new ArrayList<>())));
+            return itemDtoWithDates;
+        });
     }
 
+    // Поиск отвечает из индекса в памяти, поэтому собственная транзакция и соединение с базой ему не нужны
     @Override
-    public Collection<ItemDto> searchItems(String text, Integer from, Integer size) {
-        List<Item> resultItems = new ArrayList<>();
-        if (!text.isBlank()) {
-            if (from == null || size == null) {
-                resultItems = itemRepository.search(text);
-            } else {
-                validatePageParams(from, size);
-                int pageNumber = from / size;
-                Pageable pageable = PageRequest.of(pageNumber, size);
-                resultItems = itemRepository.search(text, pageable).toList();
-            }
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Slice<ItemDto> searchItems(String text, Integer from, Integer size) {
+        if (text.isBlank()) {
+            return new SliceImpl<>(new ArrayList<>());
         }
-        return itemMapper.toItemDto(resultItems);
+        if (from == null || size == null) {
+            return new SliceImpl<>(itemSearchIndex.search(text));
+        }
+        validatePageParams(from, size);
+        int pageNumber = from / size;
+        Pageable pageable = PageRequest.of(pageNumber, size);
+        return itemSearchIndex.search(text, pageable);
     }
 
     @Override
@@ -178,10 +263,81 @@ public class ItemServiceImpl implements ItemService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<ItemDto> findByRequestId(int requestId) {
         return itemMapper.toItemDto(itemRepository.findAllByRequestId(requestId));
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Map<Integer, List<ItemDto>> findByRequestIds(Collection<Integer> requestIds) {
+        return itemMapper.toItemDto(itemRepository.findAllByRequestIdIn(requestIds)).stream()
+                .collect(Collectors.groupingBy(ItemDto::getRequestId));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ItemAvailabilityDto getAvailability(int itemId, LocalDateTime from, LocalDateTime to, boolean includeWaiting) {
+        return getAvailability(List.of(itemId), from, to, includeWaiting).get(0);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ItemAvailabilityDto> getAvailability(List<Integer> itemIds, LocalDateTime from, LocalDateTime to,
+                                                     boolean includeWaiting) {
+        validateAvailabilityParams(itemIds, from, to);
+        List<Integer> distinctIds = new ArrayList<>(new LinkedHashSet<>(itemIds));
+        long found = 0;
+        for (List<Integer> batch : InClauseBatches.partition(distinctIds, inClauseBatchSize)) {
+            found += itemRepository.countByIdIn(batch);
+        }
+        if (found != distinctIds.size()) {
+            log.info("Не все вещи найдены: {}", distinctIds);
+            throw new ObjectNotFoundException("Вещь не найдена");
+        }
+        Map<Integer, List<AvailabilityWindowDto>> busyWindows = bookingService.getBusyWindows(distinctIds, from, to,
+                includeWaiting);
+        List<ItemAvailabilityDto> availability = new ArrayList<>();
+        for (Integer itemId : distinctIds) {
+            List<AvailabilityWindowDto> busy = busyWindows.getOrDefault(itemId, List.of());
+            availability.add(new ItemAvailabilityDto(itemId, busy, getFreeWindows(busy, from, to)));
+        }
+        return availability;
+    }
+
+    private List<AvailabilityWindowDto> getFreeWindows(List<AvailabilityWindowDto> busy, LocalDateTime from,
+                                                       LocalDateTime to) {
+        List<AvailabilityWindowDto> free = new ArrayList<>();
+        LocalDateTime start = from;
+        for (AvailabilityWindowDto window : busy) {
+            if (window.getStart().isAfter(start)) {
+                free.add(new AvailabilityWindowDto(start, window.getStart()));
+            }
+            start = window.getEnd();
+        }
+        if (start.isBefore(to)) {
+            free.add(new AvailabilityWindowDto(start, to));
+        }
+        return free;
+    }
+
+    private void validateAvailabilityParams(List<Integer> itemIds, LocalDateTime from, LocalDateTime to) {
+        if (itemIds == null || itemIds.isEmpty()) {
+            throw new ValidationException("Список вещей не может быть пустым");
+        }
+        if (itemIds.size() > availabilityMaxSize) {
+            log.info("Запрошена занятость {} вещей, допустимо не больше {}", itemIds.size(), availabilityMaxSize);
+            throw new ValidationException("Нельзя запросить занятость больше " + availabilityMaxSize + " вещей");
+        }
+        if (from == null || to == null) {
+            throw new ValidationException("Период не может быть пустым");
+        }
+        if (!to.isAfter(from)) {
+            log.info("Некорректный период: {} - {}", from, to);
+            throw new ValidationException("Дата окончания периода должна быть позже даты начала");
+        }
+    }
+
     private void validateItem(ItemDto itemDto) {
         if (itemDto.getName() == null) {
             log.info("Название не может быть пустым");
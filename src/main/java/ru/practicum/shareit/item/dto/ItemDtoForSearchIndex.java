@@ -0,0 +1,11 @@
+package ru.practicum.shareit.item.dto;
+
+public interface ItemDtoForSearchIndex extends ItemVersionDto {
+    String getName();
+
+    String getDescription();
+
+    Boolean getAvailable();
+
+    Integer getRequestId();
+}
@@ -1,6 +1,8 @@
 package ru.practicum.shareit.request;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.shareit.request.dto.ItemRequestDtoIn;
@@ -9,6 +11,7 @@ import ru.practicum.shareit.request.dto.ItemRequestDtoOut;
 import java.util.List;
 
 @RestController
+@Timed(histogram = true)
 @RequestMapping(path = "/requests")
 @RequiredArgsConstructor
 public class ItemRequestController {
@@ -29,7 +32,8 @@ public class ItemRequestController {
     ResponseEntity<List<ItemRequestDtoOut>> getAllRequests(@RequestHeader("X-Sharer-User-Id") int userId,
                                                            @RequestParam(required = false) Integer from,
                                                            @RequestParam(required = false) Integer size) {
-        return ResponseEntity.ok().body(itemRequestService.getAllRequests(userId, from, size));
+        Slice<ItemRequestDtoOut> requests = itemRequestService.getAllRequests(userId, from, size);
+        return ResponseEntity.ok().header("X-Has-More", String.valueOf(requests.hasNext())).body(requests.getContent());
     }
 
     @GetMapping("/{requestId}")
@@ -1,14 +1,27 @@
 package ru.practicum.shareit.request;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import ru.practicum.shareit.request.model.ItemRequest;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface ItemRequestRepository extends JpaRepository<ItemRequest, Integer> {
+    @Override
+    @EntityGraph(attributePaths = "requestor")
+    List<ItemRequest> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = "requestor")
+    Optional<ItemRequest> findById(Integer id);
+
+    @Query("select r from ItemRequest r join fetch r.requestor where r.requestor.id = ?1 order by r.created desc")
     List<ItemRequest> findAllByRequestorIdOrderByCreatedDesc(int requestorId);
 
-    Page<ItemRequest> findAllByRequestorIdNot(int requestorId, Pageable pageable);
+    @EntityGraph(attributePaths = "requestor")
+    Slice<ItemRequest> findAllByRequestorIdNot(int requestorId, Pageable pageable);
 }
@@ -1,5 +1,6 @@
 package ru.practicum.shareit.request;
 
+import org.springframework.data.domain.Slice;
 import ru.practicum.shareit.request.dto.ItemRequestDtoIn;
 import ru.practicum.shareit.request.dto.ItemRequestDtoOut;
 
@@ -10,7 +11,7 @@ public interface ItemRequestService {
 
     List<ItemRequestDtoOut> getRequestsByRequestor(int userId);
 
-    List<ItemRequestDtoOut> getAllRequests(int userId, Integer from, Integer size);
+    Slice<ItemRequestDtoOut> getAllRequests(int userId, Integer from, Integer size);
 
     ItemRequestDtoOut getRequestById(int userId, int requestId);
 
@@ -1,33 +1,51 @@
 package ru.practicum.shareit.request;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.exceptions.ObjectNotFoundException;
 import ru.practicum.shareit.exceptions.ValidationException;
 import ru.practicum.shareit.item.ItemService;
+import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.request.dto.ItemRequestDtoIn;
 import ru.practicum.shareit.request.dto.ItemRequestDtoOut;
 import ru.practicum.shareit.request.model.ItemRequest;
 import ru.practicum.shareit.user.UserService;
 import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.util.InClauseBatches;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 @Transactional
 public class ItemRequestServiceImpl implements ItemRequestService {
     private final ItemRequestRepository itemRequestRepository;
     private final ItemRequestMapper itemRequestMapper;
     private final UserService userService;
     private final ItemService itemService;
+    private final int inClauseBatchSize;
+
+    public ItemRequestServiceImpl(ItemRequestRepository itemRequestRepository, ItemRequestMapper itemRequestMapper,
+                                  UserService userService, ItemService itemService,
+                                  @Value("${shareit.in-clause-batch-size:500}") int inClauseBatchSize) {
+        this.itemRequestRepository = itemRequestRepository;
+        this.itemRequestMapper = itemRequestMapper;
+        this.userService = userService;
+        this.itemService = itemService;
+        this.inClauseBatchSize = inClauseBatchSize;
+    }
 
     @Override
     public ItemRequestDtoOut createItemRequest(ItemRequestDtoIn itemRequestDtoIn, int userId) {
@@ -38,51 +56,60 @@ public class ItemRequestServiceImpl implements ItemRequestService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<ItemRequestDtoOut> getRequestsByRequestor(int userId) {
         userService.getUserById(userId);
         List<ItemRequestDtoOut> itemRequestsDto = itemRequestMapper.toItemRequestDtoOut(
                 itemRequestRepository.findAllByRequestorIdOrderByCreatedDesc(userId));
-        for (ItemRequestDtoOut itemRequestDto : itemRequestsDto) {
-            itemRequestDto.setItems(itemService.findByRequestId(itemRequestDto.getId()));
-        }
+        setItems(itemRequestsDto);
         return itemRequestsDto;
     }
 
     @Override
-    public List<ItemRequestDtoOut> getAllRequests(int userId, Integer from, Integer size) {
+    @Transactional(readOnly = true)
+    public Slice<ItemRequestDtoOut> getAllRequests(int userId, Integer from, Integer size) {
         userService.getUserById(userId);
         if (from == null || size == null) {
             List<ItemRequestDtoOut> itemRequestsDto = itemRequestMapper.toItemRequestDtoOut(itemRequestRepository.findAll());
-            for (ItemRequestDtoOut itemRequestDto : itemRequestsDto) {
-                itemRequestDto.setItems(itemService.findByRequestId(itemRequestDto.getId()));
-            }
-            return itemRequestsDto;
+            setItems(itemRequestsDto);
+            return new SliceImpl<>(itemRequestsDto);
         } else {
             validatePageParams(from, size);
             int pageNumber = from / size;
             Pageable pageable = PageRequest.of(pageNumber, size, Sort.by(Sort.Direction.DESC, "created"));
-            List<ItemRequestDtoOut> itemRequestsDto = itemRequestMapper.toItemRequestDtoOut(
-                    itemRequestRepository.findAllByRequestorIdNot(userId, pageable).toList());
-            for (ItemRequestDtoOut itemRequestDto : itemRequestsDto) {
-                itemRequestDto.setItems(itemService.findByRequestId(itemRequestDto.getId()));
-            }
+            Slice<ItemRequestDtoOut> itemRequestsDto = itemRequestRepository.findAllByRequestorIdNot(userId, pageable)
+                    .map(itemRequestMapper::toItemRequestDtoOut);
+            setItems(itemRequestsDto.getContent());
             return itemRequestsDto;
         }
     }
 
     @Override
+    @Transactional(readOnly = true)
     public ItemRequestDtoOut getRequestById(int userId, int requestId) {
         userService.getUserById(userId);
         Optional<ItemRequest> itemRequestOptional = itemRequestRepository.findById(requestId);
         if (itemRequestOptional.isPresent()) {
             ItemRequestDtoOut itemRequestDto = itemRequestMapper.toItemRequestDtoOut(itemRequestOptional.get());
-            itemRequestDto.setItems(itemService.findByRequestId(itemRequestDto.getId()));
+            setItems(List.of(itemRequestDto));
             return itemRequestDto;
         } else {
             throw new ObjectNotFoundException("Запрос не найден");
         }
     }
 
+    private void setItems(List<ItemRequestDtoOut> itemRequestsDto) {
+        // Вещи для всех запросов загружаем пачками, а не отдельным запросом на каждый
+        List<Integer> requestIds = itemRequestsDto.stream().map(ItemRequestDtoOut::getId).collect(Collectors.toList());
+        Map<Integer, List<ItemDto>> items = new HashMap<>();
+        for (List<Integer> batch : InClauseBatches.partition(requestIds, inClauseBatchSize)) {
+            items.putAll(itemService.findByRequestIds(batch));
+        }
+        for (ItemRequestDtoOut itemRequestDto : itemRequestsDto) {
+            itemRequestDto.setItems(items.getOrDefault(itemRequestDto.getId(), new ArrayList<>()));
+        }
+    }
+
     private void validateRequest(ItemRequestDtoIn itemRequestDtoIn) {
         if (itemRequestDtoIn.getDescription() == null) {
             log.info("Описание не может быть пустым");
@@ -1,5 +1,6 @@
 package ru.practicum.shareit.user;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -9,6 +10,7 @@ import ru.practicum.shareit.user.dto.UserDto;
 import java.util.Collection;
 
 @RestController
+@Timed(histogram = true)
 @RequestMapping(path = "/users")
 @RequiredArgsConstructor
 public class UserController {
@@ -29,11 +29,13 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Collection<UserDto> getAllUsers() {
         return userMapper.toUserDto(userRepository.findAll());
     }
 
     @Override
+    @Transactional(readOnly = true)
     public UserDto getUserById(int userId) {
         Optional<User> opUser = userRepository.findById(userId);
         if (opUser.isPresent()) {
@@ -0,0 +1,20 @@
+package ru.practicum.shareit.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Делит список id на части для запросов IN: слишком длинный список параметров база разбирает медленно,
+// а у некоторых драйверов их число ограничено. Части - представления исходного списка, а не копии
+public final class InClauseBatches {
+
+    private InClauseBatches() {
+    }
+
+    public static <T> List<List<T>> partition(List<T> ids, int batchSize) {
+        List<List<T>> batches = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += batchSize) {
+            batches.add(ids.subList(i, Math.min(i + batchSize, ids.size())));
+        }
+        return batches;
+    }
+}
@@ -0,0 +1,4 @@
+-- Версии для оптимистичных блокировок: одновременные изменения вещи или бронирования не теряются молча
+ALTER TABLE items ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
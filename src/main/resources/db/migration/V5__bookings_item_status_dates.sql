@@ -0,0 +1,5 @@
+-- Ближайшее и последнее бронирование вещи, занятость и отклонение ожидающих бронирований, пересекающихся
+-- с подтверждённым: с датой окончания в индексе пересечение проверяется без чтения строк таблицы
+CREATE INDEX IF NOT EXISTS idx_bookings_item_status_dates ON bookings (item_id, status, start_date, end_date);
+
+DROP INDEX IF EXISTS idx_bookings_item_status_start;
@@ -0,0 +1,13 @@
+-- H2 сам создаёт индекс для каждого внешнего ключа и выбирает его вместо составного индекса запроса с тем же
+-- первым столбцом, если составной индекс не покрывает все столбцы запроса. Внешний ключ, пересозданный при уже
+-- существующем индексе ровно по его столбцу, использует этот индекс. В PostgreSQL индексы для внешних ключей
+-- не создаются, а покрывающие индексы позволяют читать списки без обращения к таблице
+ALTER TABLE comments DROP CONSTRAINT fk_itemId_comments;
+ALTER TABLE comments ADD CONSTRAINT fk_itemId_comments FOREIGN KEY (item_id) REFERENCES items (id);
+
+-- Списки бронирований пользователя читают из бронирования только эти столбцы
+DROP INDEX IF EXISTS idx_bookings_booker_end;
+CREATE INDEX idx_bookings_booker_end ON bookings (booker_id, end_date DESC, id DESC, start_date, status, item_id);
+
+DROP INDEX IF EXISTS idx_requests_requestor_created;
+CREATE INDEX idx_requests_requestor_created ON requests (requestor_id, created_date, description);
@@ -0,0 +1,4 @@
+-- Списки бронирований владельца соединяют его вещи с бронированиями по item_id и идут по курсору (end_date, id).
+-- Индекс покрывает столбцы, которые эти списки читают из бронирования, поэтому H2 выбирает его вместо индекса
+-- внешнего ключа, а PostgreSQL читает бронирования вещи уже в порядке страницы
+CREATE INDEX IF NOT EXISTS idx_bookings_item_end ON bookings (item_id, end_date DESC, id DESC, start_date, status, booker_id);
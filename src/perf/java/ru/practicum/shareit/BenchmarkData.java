@@ -0,0 +1,130 @@
+package ru.practicum.shareit;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.item.dto.ItemDto;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Заполняет встроенную H2 данными для бенчмарков сервисов: у каждого владельца ITEMS_PER_OWNER вещей,
+// у каждой вещи BOOKINGS_PER_ITEM бронирований вокруг текущей даты во всех статусах
+public class BenchmarkData {
+    public static final int ITEMS_PER_OWNER = 10;
+    public static final int BOOKINGS_PER_ITEM = 10;
+    public static final String SEARCH_TEXT = "дрель";
+
+    private static final int BATCH = 10_000;
+    private static final String[] NAMES = {"дрель", "перфоратор", "лестница", "палатка", "велосипед", "шуруповёрт",
+        "байдарка", "проектор", "газонокосилка", "фотоаппарат"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SplittableRandom random = new SplittableRandom(42);
+    // id из последовательности идут с шагом её приращения, поэтому после вставки читаем их из базы
+    private int[] userIds;
+
+    private BenchmarkData(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public static ConfigurableApplicationContext startContext() {
+        return new SpringApplicationBuilder(ShareItApp.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .properties("logging.level.root=WARN")
+                // Журнал транзакций из application.properties заметно замедлил бы пишущие бенчмарки,
+                // аргументы командной строки переопределяют его уровни
+                .run("--logging.level.org.springframework.transaction.interceptor=WARN",
+                        "--logging.level.org.springframework.orm.jpa.JpaTransactionManager=WARN");
+    }
+
+    public static BenchmarkData seed(ConfigurableApplicationContext context, int owners) {
+        BenchmarkData data = new BenchmarkData(context.getBean(JdbcTemplate.class));
+        data.insertUsers(owners);
+        data.insertItems(owners * ITEMS_PER_OWNER);
+        data.insertBookings(owners * ITEMS_PER_OWNER);
+        return data;
+    }
+
+    // Владелец из середины диапазона, чтобы его строки не оказались первыми в таблице
+    public int ownerId() {
+        return userIds[userIds.length / 2];
+    }
+
+    // Поиск запросом LIKE, которым вещи искались до индекса в памяти. Лишняя строка показывает, есть ли следующая
+    // страница
+    public static Slice<ItemDto> searchLike(JdbcTemplate jdbcTemplate, String text, Pageable pageable) {
+        List<ItemDto> items = jdbcTemplate.query("select i.id, i.name, i.description, i.is_available, i.request_id "
+                        + "from items i where (upper(i.name) like upper(concat('%', ?, '%')) "
+                        + "or upper(i.description) like upper(concat('%', ?, '%'))) and i.is_available = true "
+                        + "limit ? offset ?",
+                (rs, rowNum) -> new ItemDto(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getBoolean(4),
+                        rs.getObject(5, Integer.class)),
+                text, text, pageable.getPageSize() + 1, pageable.getOffset());
+        boolean hasNext = items.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? items.subList(0, pageable.getPageSize()) : items, pageable, hasNext);
+    }
+
+    public static int[] ids(JdbcTemplate jdbcTemplate, String table) {
+        return jdbcTemplate.queryForList("select id from " + table + " order by id", Integer.class).stream()
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    private void insertUsers(int count) {
+        List<Object[]> rows = new ArrayList<>(BATCH);
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[]{"user" + i, "user" + i + "@bench.ru"});
+            flushIfFull("insert into users (name, email) values (?, ?)", rows);
+        }
+        jdbcTemplate.batchUpdate("insert into users (name, email) values (?, ?)", rows);
+        userIds = ids(jdbcTemplate, "users");
+    }
+
+    private void insertItems(int count) {
+        String sql = "insert into items (name, description, is_available, owner_id) values (?, ?, ?, ?)";
+        List<Object[]> rows = new ArrayList<>(BATCH);
+        for (int i = 0; i < count; i++) {
+            String name = NAMES[random.nextInt(NAMES.length)];
+            rows.add(new Object[]{name + " " + i, "почти новая " + name + ", бронь от суток", random.nextInt(10) != 0,
+                    userIds[i / ITEMS_PER_OWNER]});
+            flushIfFull(sql, rows);
+        }
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+
+    private void insertBookings(int items) {
+        String sql = "insert into bookings (start_date, end_date, item_id, booker_id, status) values (?, ?, ?, ?, ?)";
+        int[] itemIds = ids(jdbcTemplate, "items");
+        LocalDateTime origin = LocalDateTime.now().minusDays(180);
+        List<Object[]> rows = new ArrayList<>(BATCH);
+        for (int item = 0; item < items; item++) {
+            for (int i = 0; i < BOOKINGS_PER_ITEM; i++) {
+                LocalDateTime start = origin.plusHours(random.nextInt(360 * 24));
+                LocalDateTime end = start.plusHours(12 + random.nextInt(7 * 24));
+                int status = random.nextInt(10);
+                rows.add(new Object[]{Timestamp.valueOf(start), Timestamp.valueOf(end), itemIds[item],
+                        userIds[random.nextInt(userIds.length)],
+                        (status < 7 ? Status.APPROVED : status < 9 ? Status.WAITING : Status.REJECTED).name()});
+                flushIfFull(sql, rows);
+            }
+        }
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+
+    private void flushIfFull(String sql, List<Object[]> rows) {
+        if (rows.size() == BATCH) {
+            jdbcTemplate.batchUpdate(sql, rows);
+            rows.clear();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package ru.practicum.shareit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.practicum.shareit.booking.BookingMapper;
+import ru.practicum.shareit.booking.BookingMapperImpl;
+import ru.practicum.shareit.booking.dto.BookingDtoOut;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.item.ItemMapper;
+import ru.practicum.shareit.item.ItemMapperImpl;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Мапперы MapStruct без Spring и базы: сколько стоит преобразование страницы сущностей в DTO
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+    @Param({"20", "1000"})
+    int size;
+
+    BookingMapper bookingMapper;
+    ItemMapper itemMapper;
+    List<Booking> bookings;
+    List<Item> items;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        bookingMapper = new BookingMapperImpl();
+        itemMapper = new ItemMapperImpl();
+        bookings = new ArrayList<>(size);
+        items = new ArrayList<>(size);
+        LocalDateTime origin = LocalDateTime.of(2030, 1, 1, 0, 0);
+        for (int i = 0; i < size; i++) {
+            User owner = user(i);
+            Item item = new Item();
+            item.setId(i);
+            item.setName("дрель " + i);
+            item.setDescription("почти новая дрель, бронь от суток");
+            item.setAvailable(true);
+            item.setOwner(owner);
+            items.add(item);
+
+            Booking booking = new Booking();
+            booking.setId(i);
+            booking.setStart(origin.plusDays(i));
+            booking.setEnd(origin.plusDays(i).plusHours(12));
+            booking.setItem(item);
+            booking.setBooker(user(size + i));
+            booking.setStatus(Status.APPROVED);
+            bookings.add(booking);
+        }
+    }
+
+    @Benchmark
+    public List<BookingDtoOut> bookingsToDtoOut() {
+        return bookingMapper.toBookingDtoOut(bookings);
+    }
+
+    @Benchmark
+    public void itemsToDtoWithDates(Blackhole blackhole) {
+        for (Item item : items) {
+            blackhole.consume(itemMapper.toItemDtoWithDates(item));
+        }
+    }
+
+    private User user(int id) {
+        User user = new User();
+        user.setId(id);
+        user.setName("user" + id);
+        user.setEmail("user" + id + "@bench.ru");
+        return user;
+    }
+}
@@ -0,0 +1,145 @@
+package ru.practicum.shareit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.booking.BookingRepository;
+import ru.practicum.shareit.booking.dto.BookingDtoOut;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.item.dto.ItemDto;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Сравнивает Slice с Page, который дополнительно выполняет запрос count, как это делает Spring Data
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PagingBenchmark {
+    private static final int USERS = 1000;
+    private static final int BATCH = 10_000;
+    private static final String SEARCH_TEXT = "дрель";
+
+    @Param({"1000000"})
+    int rows;
+
+    ConfigurableApplicationContext context;
+    BookingRepository bookingRepository;
+    JdbcTemplate jdbcTemplate;
+    Pageable bookingsPage;
+    Pageable searchPage;
+    int ownerId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(ShareItApp.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .properties("logging.level.root=WARN")
+                .run();
+        bookingRepository = context.getBean(BookingRepository.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        List<Object[]> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(new Object[]{"user" + i, "user" + i + "@bench.ru"});
+        }
+        jdbcTemplate.batchUpdate("insert into users (name, email) values (?, ?)", users);
+        int[] userIds = BenchmarkData.ids(jdbcTemplate, "users");
+        ownerId = userIds[0];
+
+        // Каждая сотая вещь находится поиском
+        SplittableRandom random = new SplittableRandom(42);
+        List<Object[]> items = new ArrayList<>(BATCH);
+        for (int i = 0; i < rows; i++) {
+            String description = i % 100 == 0 ? "ударная " + SEARCH_TEXT : "описание вещи " + i;
+            items.add(new Object[]{"вещь " + i, description, true, userIds[i % USERS]});
+            if (items.size() == BATCH) {
+                jdbcTemplate.batchUpdate("insert into items (name, description, is_available, owner_id) "
+                        + "values (?, ?, ?, ?)", items);
+                items.clear();
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into items (name, description, is_available, owner_id) "
+                + "values (?, ?, ?, ?)", items);
+        int[] itemIds = BenchmarkData.ids(jdbcTemplate, "items");
+
+        LocalDateTime origin = LocalDateTime.of(2030, 1, 1, 0, 0);
+        List<Object[]> bookings = new ArrayList<>(BATCH);
+        for (int i = 0; i < rows; i++) {
+            LocalDateTime start = origin.plusHours(random.nextInt(24 * 365));
+            bookings.add(new Object[]{Timestamp.valueOf(start), Timestamp.valueOf(start.plusDays(1)),
+                    itemIds[random.nextInt(rows)], userIds[random.nextInt(USERS)], Status.APPROVED.name()});
+            if (bookings.size() == BATCH) {
+                jdbcTemplate.batchUpdate("insert into bookings (start_date, end_date, item_id, booker_id, status) "
+                        + "values (?, ?, ?, ?, ?)", bookings);
+                bookings.clear();
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into bookings (start_date, end_date, item_id, booker_id, status) "
+                + "values (?, ?, ?, ?, ?)", bookings);
+
+        // Страница из середины списка, чтобы Page не мог обойтись без запроса count
+        bookingsPage = PageRequest.of(10, 20);
+        searchPage = PageRequest.of(10, 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Slice<BookingDtoOut> ownerBookingsSlice() {
+        return bookingRepository.findAllByItemOwnerId(ownerId, bookingsPage);
+    }
+
+    @Benchmark
+    public Page<BookingDtoOut> ownerBookingsPage() {
+        return PageableExecutionUtils.getPage(
+                bookingRepository.findAllByItemOwnerId(ownerId, bookingsPage).getContent(), bookingsPage,
+                () -> jdbcTemplate.queryForObject("select count(*) from bookings b join items i on b.item_id = i.id "
+                        + "where i.owner_id = ?", Long.class, ownerId));
+    }
+
+    @Benchmark
+    public Slice<ItemDto> searchSlice() {
+        return BenchmarkData.searchLike(jdbcTemplate, SEARCH_TEXT, searchPage);
+    }
+
+    @Benchmark
+    public Page<ItemDto> searchPage() {
+        return PageableExecutionUtils.getPage(BenchmarkData.searchLike(jdbcTemplate, SEARCH_TEXT, searchPage)
+                        .getContent(), searchPage,
+                () -> jdbcTemplate.queryForObject("select count(*) from items i "
+                        + "where (upper(i.name) like upper(concat('%', ?, '%')) "
+                        + "or upper(i.description) like upper(concat('%', ?, '%'))) and i.is_available = true",
+                        Long.class, SEARCH_TEXT, SEARCH_TEXT));
+    }
+}
@@ -0,0 +1,130 @@
+package ru.practicum.shareit.booking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.ShareItApp;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Вставка бронирований через Hibernate: id из последовательности с пакетной вставкой против IDENTITY.
+// H2 выполняет пакет JDBC по одной команде, поэтому экономию сетевых обменов показывает только PostgreSQL
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 8)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BookingInsertBenchmark {
+    // Кратно hibernate.jdbc.batch_size
+    private static final int FLUSH_EVERY = 1000;
+
+    @Param({"100000"})
+    int bookings;
+
+    ConfigurableApplicationContext context;
+    EntityManager em;
+    TransactionTemplate transactionTemplate;
+    JdbcTemplate jdbcTemplate;
+    LocalDateTime origin;
+    int itemId;
+    int bookerId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(ShareItApp.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .properties("logging.level.root=WARN")
+                .run();
+        em = context.getBean(EntityManager.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        jdbcTemplate.update("insert into users (name, email) values ('owner', 'owner@bench.ru')");
+        jdbcTemplate.update("insert into users (name, email) values ('booker', 'booker@bench.ru')");
+        int ownerId = jdbcTemplate.queryForObject("select id from users where email = 'owner@bench.ru'", Integer.class);
+        bookerId = jdbcTemplate.queryForObject("select id from users where email = 'booker@bench.ru'", Integer.class);
+        jdbcTemplate.update("insert into items (name, description, is_available, owner_id) values ('item', 'item', true, ?)",
+                ownerId);
+        itemId = jdbcTemplate.queryForObject("select max(id) from items", Integer.class);
+        origin = LocalDateTime.of(2030, 1, 1, 0, 0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() {
+        jdbcTemplate.update("delete from bookings");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void sequenceBatched() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Item item = em.getReference(Item.class, itemId);
+            User booker = em.getReference(User.class, bookerId);
+            for (int i = 0; i < bookings; i++) {
+                Booking booking = new Booking();
+                booking.setStart(origin.plusDays(i));
+                booking.setEnd(origin.plusDays(i).plusHours(12));
+                booking.setItem(item);
+                booking.setBooker(booker);
+                booking.setStatus(Status.WAITING);
+                em.persist(booking);
+                if ((i + 1) % FLUSH_EVERY == 0) {
+                    flushAndClear();
+                    item = em.getReference(Item.class, itemId);
+                    booker = em.getReference(User.class, bookerId);
+                }
+            }
+        });
+    }
+
+    @Benchmark
+    public void identity() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < bookings; i++) {
+                IdentityBooking booking = new IdentityBooking();
+                booking.setStart(origin.plusDays(i));
+                booking.setEnd(origin.plusDays(i).plusHours(12));
+                booking.setItemId(itemId);
+                booking.setBookerId(bookerId);
+                booking.setStatus(Status.WAITING.name());
+                em.persist(booking);
+                if ((i + 1) % FLUSH_EVERY == 0) {
+                    flushAndClear();
+                }
+            }
+        });
+    }
+
+    private void flushAndClear() {
+        em.flush();
+        em.clear();
+    }
+}
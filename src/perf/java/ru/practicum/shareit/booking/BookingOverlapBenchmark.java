@@ -0,0 +1,102 @@
+package ru.practicum.shareit.booking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.ShareItApp;
+import ru.practicum.shareit.booking.model.Status;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookingOverlapBenchmark {
+    @Param({"10000", "50000"})
+    int bookingsPerItem;
+
+    ConfigurableApplicationContext context;
+    BookingRepository bookingRepository;
+    BookingIntervalIndex bookingIntervalIndex;
+    LocalDateTime origin;
+    SplittableRandom random;
+    int itemId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(ShareItApp.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .properties("logging.level.root=WARN")
+                .run();
+        bookingRepository = context.getBean(BookingRepository.class);
+        bookingIntervalIndex = context.getBean(BookingIntervalIndex.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        jdbcTemplate.update("insert into users (name, email) values ('owner', 'owner@bench.ru')");
+        jdbcTemplate.update("insert into users (name, email) values ('booker', 'booker@bench.ru')");
+        Integer ownerId = jdbcTemplate.queryForObject("select id from users where email = 'owner@bench.ru'", Integer.class);
+        Integer bookerId = jdbcTemplate.queryForObject("select id from users where email = 'booker@bench.ru'", Integer.class);
+        jdbcTemplate.update("insert into items (name, description, is_available, owner_id) values ('item', 'item', true, ?)",
+                ownerId);
+        itemId = jdbcTemplate.queryForObject("select max(id) from items", Integer.class);
+
+        // Подтверждённые бронирования по 12 часов с промежутками по 12 часов
+        origin = LocalDateTime.of(2030, 1, 1, 0, 0);
+        List<Object[]> rows = new ArrayList<>(bookingsPerItem);
+        for (int i = 0; i < bookingsPerItem; i++) {
+            LocalDateTime start = origin.plusDays(i);
+            rows.add(new Object[]{Timestamp.valueOf(start), Timestamp.valueOf(start.plusHours(12)), itemId, bookerId,
+                    Status.APPROVED.name()});
+        }
+        jdbcTemplate.batchUpdate("insert into bookings (start_date, end_date, item_id, booker_id, status) "
+                + "values (?, ?, ?, ?, ?)", rows);
+
+        random = new SplittableRandom(42);
+        bookingIntervalIndex.hasOverlap(itemId, origin, origin.plusHours(1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean intervalIndex() {
+        LocalDateTime start = nextStart();
+        return bookingIntervalIndex.hasOverlap(itemId, start, start.plusHours(6));
+    }
+
+    @Benchmark
+    public boolean repositoryQuery() {
+        LocalDateTime start = nextStart();
+        return bookingRepository.existsByItemIdAndStatusAndStartIsBeforeAndEndIsAfter(itemId, Status.APPROVED,
+                start.plusHours(6), start);
+    }
+
+    private LocalDateTime nextStart() {
+        return origin.plusHours(random.nextInt(bookingsPerItem * 24));
+    }
+}
@@ -0,0 +1,86 @@
+package ru.practicum.shareit.booking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.BenchmarkData;
+import ru.practicum.shareit.booking.dto.BookingDtoOut;
+import ru.practicum.shareit.booking.model.Booking;
+
+import javax.persistence.EntityManager;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Бронирования владельца сущностями с маппингом MapStruct и проекцией сразу в BookingDtoOut.
+// Выделение памяти на ответ видно с профилировщиком -prof gc (gc.alloc.rate.norm)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BookingProjectionBenchmark {
+    @Param({"10000"})
+    int owners;
+
+    // У владельца 100 бронирований: 100 — весь список
+    @Param({"20", "100"})
+    int size;
+
+    ConfigurableApplicationContext context;
+    BookingRepository bookingRepository;
+    BookingMapper bookingMapper;
+    EntityManager em;
+    TransactionTemplate transactionTemplate;
+    Pageable pageable;
+    int ownerId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkData.startContext();
+        bookingRepository = context.getBean(BookingRepository.class);
+        bookingMapper = context.getBean(BookingMapper.class);
+        em = context.getBean(EntityManager.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transactionTemplate.setReadOnly(true);
+        ownerId = BenchmarkData.seed(context, owners).ownerId();
+        pageable = PageRequest.of(0, size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<BookingDtoOut> entities() {
+        return transactionTemplate.execute(status -> bookingMapper.toBookingDtoOut(em.createQuery(
+                        "select b from Booking b join fetch b.item i join fetch b.booker " +
+                                "where i.owner.id = ?1 order by b.end desc, b.id desc", Booking.class)
+                .setParameter(1, ownerId)
+                .setMaxResults(size)
+                .getResultList()));
+    }
+
+    @Benchmark
+    public List<BookingDtoOut> projection() {
+        return transactionTemplate.execute(status -> bookingRepository.findAllByItemOwnerId(ownerId, pageable)
+                .getContent());
+    }
+}
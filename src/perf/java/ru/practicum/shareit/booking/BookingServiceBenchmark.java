@@ -0,0 +1,62 @@
+package ru.practicum.shareit.booking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Slice;
+import ru.practicum.shareit.BenchmarkData;
+import ru.practicum.shareit.booking.dto.BookingDtoOut;
+
+import java.util.concurrent.TimeUnit;
+
+// Бронирования владельца по каждому состоянию: весь список и первая страница
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BookingServiceBenchmark {
+    @Param({"10000"})
+    int owners;
+
+    @Param({"ALL", "CURRENT", "PAST", "FUTURE", "WAITING", "REJECTED"})
+    String state;
+
+    ConfigurableApplicationContext context;
+    BookingService bookingService;
+    int ownerId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkData.startContext();
+        bookingService = context.getBean(BookingService.class);
+        ownerId = BenchmarkData.seed(context, owners).ownerId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Slice<BookingDtoOut> getAllForOwner() {
+        return bookingService.getAllForOwner(ownerId, state, null, null);
+    }
+
+    @Benchmark
+    public Slice<BookingDtoOut> getAllForOwnerPage() {
+        return bookingService.getAllForOwner(ownerId, state, 0, 20);
+    }
+}
@@ -0,0 +1,30 @@
+package ru.practicum.shareit.booking;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+// Бронирование с прежней генерацией id через IDENTITY: Hibernate вставляет такие строки по одной
+@Entity
+@Table(name = "bookings")
+@Data
+public class IdentityBooking {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "start_date", nullable = false)
+    private LocalDateTime start;
+
+    @Column(name = "end_date", nullable = false)
+    private LocalDateTime end;
+
+    @Column(name = "item_id")
+    private Integer itemId;
+
+    @Column(name = "booker_id")
+    private Integer bookerId;
+
+    private String status;
+}
@@ -0,0 +1,82 @@
+package ru.practicum.shareit.booking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.BenchmarkData;
+import ru.practicum.shareit.booking.dto.BookingDtoIn;
+import ru.practicum.shareit.booking.dto.BookingDtoOut;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Создание бронирований из нескольких потоков: все потоки бронируют одну горячую вещь и ждут друг друга
+// на её блокировке или бронируют случайные из 10 000 вещей и почти не пересекаются
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(4)
+public class ItemLockContentionBenchmark {
+    @Param({"1", "10000"})
+    int items;
+
+    ConfigurableApplicationContext context;
+    BookingService bookingService;
+    int[] itemIds;
+    int bookerId;
+    LocalDateTime origin;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkData.startContext();
+        bookingService = context.getBean(BookingService.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        jdbcTemplate.update("insert into users (name, email) values ('owner', 'owner@bench.ru')");
+        jdbcTemplate.update("insert into users (name, email) values ('booker', 'booker@bench.ru')");
+        int ownerId = jdbcTemplate.queryForObject("select id from users where email = 'owner@bench.ru'", Integer.class);
+        bookerId = jdbcTemplate.queryForObject("select id from users where email = 'booker@bench.ru'", Integer.class);
+        List<Object[]> rows = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            rows.add(new Object[]{"дрель " + i, "ударная дрель", true, ownerId});
+        }
+        jdbcTemplate.batchUpdate("insert into items (name, description, is_available, owner_id) values (?, ?, ?, ?)",
+                rows);
+        itemIds = BenchmarkData.ids(jdbcTemplate, "items");
+        origin = LocalDateTime.now().plusYears(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BookingDtoOut createBooking() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        BookingDtoIn booking = new BookingDtoIn();
+        booking.setItemId(itemIds[random.nextInt(itemIds.length)]);
+        booking.setStart(origin.plusHours(random.nextInt(24 * 365)));
+        booking.setEnd(booking.getStart().plusHours(12));
+        return bookingService.createBooking(booking, bookerId);
+    }
+}
@@ -0,0 +1,118 @@
+package ru.practicum.shareit.item;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.BenchmarkData;
+import ru.practicum.shareit.ShareItApp;
+import ru.practicum.shareit.item.dto.ItemDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Сравнивает поиск запросом LIKE с поиском по триграммному индексу в памяти
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ItemSearchBenchmark {
+    private static final int USERS = 1000;
+    private static final int BATCH = 10_000;
+
+    @Param({"100000", "1000000"})
+    int rows;
+
+    // Встречается в каждой сотой и в каждой десятитысячной вещи
+    @Param({"дрель", "перфоратор"})
+    String text;
+
+    ConfigurableApplicationContext context;
+    JdbcTemplate jdbcTemplate;
+    ItemSearchIndex itemSearchIndex;
+    ItemService itemService;
+    Pageable pageable;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(ShareItApp.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .properties("logging.level.root=WARN")
+                .run();
+        itemSearchIndex = context.getBean(ItemSearchIndex.class);
+        itemService = context.getBean(ItemService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        List<Object[]> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(new Object[]{"user" + i, "user" + i + "@bench.ru"});
+        }
+        jdbcTemplate.batchUpdate("insert into users (name, email) values (?, ?)", users);
+        int[] userIds = BenchmarkData.ids(jdbcTemplate, "users");
+
+        List<Object[]> items = new ArrayList<>(BATCH);
+        for (int i = 0; i < rows; i++) {
+            String description;
+            if (i % 10_000 == 0) {
+                description = "ударная дрель и перфоратор";
+            } else if (i % 100 == 0) {
+                description = "ударная дрель";
+            } else {
+                description = "описание вещи " + i;
+            }
+            // Каждая десятая вещь недоступна
+            items.add(new Object[]{"вещь " + i, description, i % 10 != 1, userIds[i % USERS]});
+            if (items.size() == BATCH) {
+                jdbcTemplate.batchUpdate("insert into items (name, description, is_available, owner_id) "
+                        + "values (?, ?, ?, ?)", items);
+                items.clear();
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into items (name, description, is_available, owner_id) "
+                + "values (?, ?, ?, ?)", items);
+
+        pageable = PageRequest.of(0, 20);
+        // Индекс построен при старте, а вещи вставлены в обход Hibernate: обновление загружает их из базы
+        itemSearchIndex.refresh();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Slice<ItemDto> likeQuery() {
+        return BenchmarkData.searchLike(jdbcTemplate, text, pageable);
+    }
+
+    @Benchmark
+    public List<ItemDto> invertedIndex() {
+        return itemSearchIndex.search(text);
+    }
+
+    @Benchmark
+    public Slice<ItemDto> searchItems() {
+        return itemService.searchItems(text, 0, 20);
+    }
+}
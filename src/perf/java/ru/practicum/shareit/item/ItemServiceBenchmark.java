@@ -0,0 +1,66 @@
+package ru.practicum.shareit.item;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Slice;
+import ru.practicum.shareit.BenchmarkData;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.ItemDtoWithDates;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ItemServiceBenchmark {
+    @Param({"10000"})
+    int owners;
+
+    ConfigurableApplicationContext context;
+    ItemService itemService;
+    int ownerId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkData.startContext();
+        itemService = context.getBean(ItemService.class);
+        ownerId = BenchmarkData.seed(context, owners).ownerId();
+        // Поисковый индекс строится при первом поиске
+        itemService.searchItems(BenchmarkData.SEARCH_TEXT, 0, 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Slice<ItemDtoWithDates> getAllItems() {
+        return itemService.getAllItems(ownerId, null, null);
+    }
+
+    @Benchmark
+    public Slice<ItemDto> searchItemsPage() {
+        return itemService.searchItems(BenchmarkData.SEARCH_TEXT, 0, 20);
+    }
+
+    @Benchmark
+    public Slice<ItemDto> searchItems() {
+        return itemService.searchItems(BenchmarkData.SEARCH_TEXT, null, null);
+    }
+}
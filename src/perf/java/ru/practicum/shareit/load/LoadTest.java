@@ -0,0 +1,257 @@
+package ru.practicum.shareit.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.ShareItApp;
+import ru.practicum.shareit.config.QueryCountFilter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+// Нагрузочный тест открытой модели: запросы отправляются с заданной интенсивностью независимо от того,
+// успел ли сервис ответить на предыдущие. Задержка считается от запланированного момента отправки, а не от
+// фактического, поэтому отставание генератора не прячет очередь (поправка на coordinated omission)
+public class LoadTest {
+    private static final String[] SEARCH_TEXTS = {"дрель", "палатка", "велосипед", "проектор", "самокат", "мангал"};
+
+    private final Environment env;
+    private final String baseUrl;
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+    private final Map<String, AtomicLong> errors = new LinkedHashMap<>();
+    // Число запросов к базе на HTTP-запрос из заголовка X-Query-Count
+    private final Map<String, Histogram> queries = new LinkedHashMap<>();
+    private final int[] userIds;
+    private final int[] ownerIds;
+    private final int[] bookerIds;
+    private int totalWeight;
+
+    public static void main(String[] args) throws Exception {
+        // Системные свойства важнее application.properties, где включена трассировка транзакций
+        System.setProperty("logging.level.org.springframework.transaction.interceptor", "WARN");
+        System.setProperty("logging.level.org.springframework.orm.jpa.JpaTransactionManager", "WARN");
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ShareItApp.class)
+                .profiles("test", "generate", "diagnostics")
+                .properties("server.port=0",
+                        "logging.level.root=WARN",
+                        "logging.level.ru.practicum.shareit.generator=INFO",
+                        "shareit.generate.users=10000",
+                        "shareit.generate.items=100000",
+                        "shareit.generate.bookings=500000",
+                        "shareit.generate.requests=20000")
+                .run(args);
+        try {
+            new LoadTest(context).run();
+        } finally {
+            context.close();
+        }
+    }
+
+    LoadTest(ConfigurableApplicationContext context) {
+        env = context.getEnvironment();
+        baseUrl = "http://localhost:" + env.getProperty("local.server.port");
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        userIds = ids(jdbcTemplate, "select id from users");
+        ownerIds = ids(jdbcTemplate, "select distinct owner_id from items");
+        bookerIds = ids(jdbcTemplate, "select distinct booker_id from bookings");
+
+        addEndpoint("bookings", random -> get("/bookings?state=ALL&from=0&size=20", pick(random, bookerIds)));
+        addEndpoint("owner-bookings", random -> get("/bookings/owner?state=ALL&from=0&size=20",
+                pick(random, ownerIds)));
+        addEndpoint("items", random -> get("/items?from=0&size=20", pick(random, ownerIds)));
+        addEndpoint("search", random -> get("/items/search?from=0&size=20&text="
+                + URLEncoder.encode(SEARCH_TEXTS[random.nextInt(SEARCH_TEXTS.length)], StandardCharsets.UTF_8),
+                pick(random, userIds)));
+        addEndpoint("requests", random -> get("/requests/all?from=0&size=20", pick(random, userIds)));
+    }
+
+    void run() throws Exception {
+        double rate = env.getProperty("shareit.load.rate", Double.class, 50.0);
+        long duration = TimeUnit.SECONDS.toNanos(env.getProperty("shareit.load.duration", Long.class, 60L));
+        long warmup = TimeUnit.SECONDS.toNanos(env.getProperty("shareit.load.warmup", Long.class, 10L));
+        boolean poisson = !"constant".equals(env.getProperty("shareit.load.arrival", "poisson"));
+        Path reportDir = Path.of(env.getProperty("shareit.load.report-dir", "target/load"));
+        System.out.printf("Нагрузка %.0f запросов/с (%s), прогрев %d с, замер %d с, %s%n", rate,
+                poisson ? "пуассоновский поток" : "равномерный поток", TimeUnit.NANOSECONDS.toSeconds(warmup),
+                TimeUnit.NANOSECONDS.toSeconds(duration), baseUrl);
+
+        ExecutorService executor = Executors.newFixedThreadPool(env.getProperty("shareit.load.threads", Integer.class,
+                Runtime.getRuntime().availableProcessors() * 2));
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(executor)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        SplittableRandom random = new SplittableRandom(env.getProperty("shareit.load.seed", Long.class, 42L));
+        Phaser inFlight = new Phaser(1);
+        long start = System.nanoTime();
+        long measureFrom = start + warmup;
+        long end = measureFrom + duration;
+        long intended = start;
+        while (intended < end) {
+            double interval = poisson ? -Math.log(1 - random.nextDouble()) / rate : 1 / rate;
+            intended += (long) (interval * TimeUnit.SECONDS.toNanos(1));
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            Endpoint endpoint = pickEndpoint(random);
+            long scheduled = intended;
+            boolean measured = scheduled >= measureFrom;
+            inFlight.register();
+            client.sendAsync(endpoint.request.apply(random), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (measured) {
+                            histograms.get(endpoint.name).recordValue(
+                                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduled));
+                            if (error != null || response.statusCode() >= 400) {
+                                errors.get(endpoint.name).incrementAndGet();
+                            } else {
+                                response.headers().firstValueAsLong(QueryCountFilter.QUERY_COUNT_HEADER)
+                                        .ifPresent(count -> queries.get(endpoint.name).recordValue(count));
+                            }
+                        }
+                        inFlight.arriveAndDeregister();
+                    });
+        }
+        inFlight.arriveAndAwaitAdvance();
+        executor.shutdown();
+        report(reportDir, TimeUnit.NANOSECONDS.toSeconds(duration));
+    }
+
+    private void report(Path reportDir, long seconds) throws IOException {
+        Files.createDirectories(reportDir);
+        Histogram total = new Histogram(3);
+        Histogram totalQueries = new Histogram(2);
+        Map<String, Object> json = new LinkedHashMap<>();
+        PrintStream out = System.out;
+        out.printf("%-16s %9s %7s %9s %9s %9s %9s %9s %9s %9s%n", "endpoint", "requests", "errors",
+                "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "sql avg", "sql max");
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+            Histogram queryCounts = queries.get(entry.getKey());
+            total.add(histogram);
+            totalQueries.add(queryCounts);
+            json.put(entry.getKey(), summary(histogram, queryCounts, errors.get(entry.getKey()).get(), seconds));
+            print(out, entry.getKey(), histogram, queryCounts, errors.get(entry.getKey()).get());
+            writeDistribution(reportDir.resolve(entry.getKey() + ".hgrm"), histogram);
+        }
+        long totalErrors = errors.values().stream().mapToLong(AtomicLong::get).sum();
+        json.put("total", summary(total, totalQueries, totalErrors, seconds));
+        print(out, "total", total, totalQueries, totalErrors);
+        writeDistribution(reportDir.resolve("total.hgrm"), total);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(reportDir.resolve("report.json").toFile(), json);
+        out.println("Отчёт: " + reportDir.toAbsolutePath());
+    }
+
+    private Map<String, Object> summary(Histogram histogram, Histogram queryCounts, long errorCount, long seconds) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", histogram.getTotalCount());
+        summary.put("errors", errorCount);
+        summary.put("throughput", seconds > 0 ? (double) histogram.getTotalCount() / seconds : 0);
+        summary.put("p50", millis(histogram.getValueAtPercentile(50)));
+        summary.put("p90", millis(histogram.getValueAtPercentile(90)));
+        summary.put("p99", millis(histogram.getValueAtPercentile(99)));
+        summary.put("p99.9", millis(histogram.getValueAtPercentile(99.9)));
+        summary.put("max", millis(histogram.getMaxValue()));
+        summary.put("queriesMean", queryCounts.getMean());
+        summary.put("queriesMax", queryCounts.getMaxValue());
+        return summary;
+    }
+
+    private void print(PrintStream out, String name, Histogram histogram, Histogram queryCounts, long errorCount) {
+        out.printf("%-16s %9d %7d %9.2f %9.2f %9.2f %9.2f %9.2f %9.1f %9d%n", name, histogram.getTotalCount(),
+                errorCount, millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)), millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()), queryCounts.getMean(), queryCounts.getMaxValue());
+    }
+
+    private void writeDistribution(Path file, Histogram histogram) throws IOException {
+        try (PrintStream stream = new PrintStream(Files.newOutputStream(file), true, StandardCharsets.UTF_8)) {
+            // Значения в микросекундах, в файле — в миллисекундах
+            histogram.outputPercentileDistribution(stream, 1000.0);
+        }
+    }
+
+    private void addEndpoint(String name, Function<SplittableRandom, HttpRequest> request) {
+        int weight = env.getProperty("shareit.load.mix." + name, Integer.class, 20);
+        if (weight > 0) {
+            endpoints.add(new Endpoint(name, weight, request));
+            histograms.put(name, new ConcurrentHistogram(3));
+            errors.put(name, new AtomicLong());
+            queries.put(name, new ConcurrentHistogram(2));
+            totalWeight += weight;
+        }
+    }
+
+    private Endpoint pickEndpoint(SplittableRandom random) {
+        int roll = random.nextInt(totalWeight);
+        for (Endpoint endpoint : endpoints) {
+            roll -= endpoint.weight;
+            if (roll < 0) {
+                return endpoint;
+            }
+        }
+        throw new IllegalStateException("Пустая смесь запросов");
+    }
+
+    private HttpRequest get(String path, int userId) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("X-Sharer-User-Id", String.valueOf(userId))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    private static int pick(SplittableRandom random, int[] ids) {
+        return ids[random.nextInt(ids.length)];
+    }
+
+    private static int[] ids(JdbcTemplate jdbcTemplate, String sql) {
+        return jdbcTemplate.queryForList(sql, Integer.class).stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static class Endpoint {
+        private final String name;
+        private final int weight;
+        private final Function<SplittableRandom, HttpRequest> request;
+
+        Endpoint(String name, int weight, Function<SplittableRandom, HttpRequest> request) {
+            this.name = name;
+            this.weight = weight;
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package ru.practicum.shareit;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.config.QueryCountFilter;
+import ru.practicum.shareit.item.ItemService;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.request.ItemRequestService;
+import ru.practicum.shareit.request.dto.ItemRequestDtoIn;
+import ru.practicum.shareit.user.UserService;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.model.User;
+
+import javax.persistence.EntityManagerFactory;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Число запросов к базе для каждого эндпоинта. Тест не транзакционный: open-in-view выключен, и ленивые связи,
+// не загруженные планом выборки репозитория, при сериализации ответа привели бы к ошибке
+@SpringBootTest(properties = "db.name=test")
+@AutoConfigureMockMvc
+@ActiveProfiles({"test", "diagnostics"})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class EndpointQueryCountTest {
+    private static final String USER_HEADER = "X-Sharer-User-Id";
+    private static final int ITEMS = 3;
+
+    private final MockMvc mvc;
+    private final JdbcTemplate jdbcTemplate;
+    private final UserService userService;
+    private final ItemService itemService;
+    private final ItemRequestService itemRequestService;
+    private final EntityManagerFactory entityManagerFactory;
+    int ownerId;
+    int bookerId;
+    int itemId;
+    int bookingId;
+    int requestId;
+
+    @BeforeEach
+    void beforeEach() {
+        // Пользователи и вещи, созданные ниже через сервисы, попадут в кэш второго уровня, а кэш запросов пуст
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        ownerId = userService.createUser(new UserDto(null, "владелец", "owner@yandex.ru")).getId();
+        bookerId = userService.createUser(new UserDto(null, "арендатор", "booker@yandex.ru")).getId();
+        ItemRequestDtoIn request = new ItemRequestDtoIn();
+        request.setDescription("нужна дрель");
+        requestId = itemRequestService.createItemRequest(request, bookerId).getId();
+
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        for (int i = 0; i < ITEMS; i++) {
+            itemId = itemService.createItem(new ItemDto(null, "дрель " + i, "ударная дрель", true, requestId),
+                    ownerId).getId();
+            insertBooking(now.minusDays(3), now.minusDays(2));
+            insertBooking(now.plusDays(2), now.plusDays(3));
+            jdbcTemplate.update("insert into comments (text, item_id, author_id, created_date) values (?, ?, ?, ?)",
+                    "отличная дрель", itemId, bookerId, Timestamp.valueOf(now.minusDays(1)));
+        }
+        bookingId = jdbcTemplate.queryForObject("select max(id) from bookings where booker_id = ?", Integer.class,
+                bookerId);
+    }
+
+    @AfterEach
+    void afterEach() {
+        jdbcTemplate.update("delete from comments where author_id = ?", bookerId);
+        jdbcTemplate.update("delete from bookings where booker_id = ?", bookerId);
+        jdbcTemplate.update("delete from items where owner_id = ?", ownerId);
+        jdbcTemplate.update("delete from requests where requestor_id = ?", bookerId);
+        jdbcTemplate.update("delete from users where id in (?, ?)", ownerId, bookerId);
+    }
+
+    @Test
+    void testUserEndpoints() throws Exception {
+        // Пользователь из кэша второго уровня, после вытеснения — один запрос
+        expectQueries(get("/users/{id}", ownerId), 0);
+        entityManagerFactory.getCache().evict(User.class);
+        expectQueries(get("/users/{id}", ownerId), 1);
+        expectQueries(get("/users/{id}", ownerId), 0);
+        // Список пользователей из кэша запросов до первого изменения таблицы
+        expectQueries(get("/users"), 1);
+        expectQueries(get("/users"), 0);
+        userService.updateUser(bookerId, new UserDto(null, "новый арендатор", null));
+        expectQueries(get("/users"), 1);
+    }
+
+    @Test
+    void testItemEndpoints() throws Exception {
+        // Вещь из кэша второго уровня, число подтверждённых и следующее с последним бронирования, отзывы с авторами
+        expectQueries(get("/items/{id}", itemId).header(USER_HEADER, ownerId), 3)
+                .andExpect(jsonPath("$.comments[0].authorName").value("арендатор"))
+                .andExpect(jsonPath("$.nextBooking.bookerId").value(bookerId))
+                .andExpect(jsonPath("$.nextBooking.start").doesNotExist());
+        // Повторно бронирования берутся из кэша следующего и последнего бронирования после сверки числа подтверждённых
+        expectQueries(get("/items/{id}", itemId).header(USER_HEADER, ownerId), 2)
+                .andExpect(jsonPath("$.lastBooking.bookerId").value(bookerId));
+        // Страница вещей, бронирования и отзывы для всей страницы; повторно вещи берутся из кэша запросов,
+        // а бронирования - из кэша следующего и последнего бронирования, сверенного с базой одним запросом
+        expectQueries(get("/items?from=0&size=10").header(USER_HEADER, ownerId), 4)
+                .andExpect(jsonPath("$", hasSize(ITEMS)));
+        expectQueries(get("/items?from=0&size=10").header(USER_HEADER, ownerId), 2)
+                .andExpect(jsonPath("$", hasSize(ITEMS)))
+                .andExpect(jsonPath("$[0].nextBooking.bookerId").value(bookerId));
+        expectQueries(get("/items").header(USER_HEADER, ownerId), 3);
+        // Первый поиск строит индекс, следующие отвечают из памяти
+        mvc.perform(get("/items/search?text=дрель").header(USER_HEADER, bookerId));
+        expectQueries(get("/items/search?text=дрель&from=0&size=10").header(USER_HEADER, bookerId), 0);
+    }
+
+    @Test
+    void testBookingEndpoints() throws Exception {
+        // Бронирование вместе с вещью и арендатором
+        expectQueries(get("/bookings/{id}", bookingId).header(USER_HEADER, ownerId), 1)
+                .andExpect(jsonPath("$.item.name").exists())
+                .andExpect(jsonPath("$.booker.name").value("арендатор"));
+        // Страница бронирований с вещами и арендаторами одним запросом, пользователь из кэша второго уровня
+        expectQueries(get("/bookings?state=ALL&from=0&size=10").header(USER_HEADER, bookerId), 1)
+                .andExpect(jsonPath("$", hasSize(ITEMS * 2)))
+                .andExpect(jsonPath("$[0].item.name").exists())
+                .andExpect(jsonPath("$[0].booker.name").value("арендатор"));
+        expectQueries(get("/bookings?state=ALL").header(USER_HEADER, bookerId), 1);
+        expectQueries(get("/bookings/owner?state=PAST&from=0&size=10").header(USER_HEADER, ownerId), 1)
+                .andExpect(jsonPath("$", hasSize(ITEMS)));
+        expectQueries(get("/bookings/owner?state=ALL").header(USER_HEADER, ownerId), 1);
+    }
+
+    @Test
+    void testRequestEndpoints() throws Exception {
+        // Запросы с авторами и вещи для всех запросов, пользователь из кэша второго уровня
+        expectQueries(get("/requests").header(USER_HEADER, bookerId), 2)
+                .andExpect(jsonPath("$[0].items", hasSize(ITEMS)));
+        // Вещи для тех же запросов уже в кэше запросов
+        expectQueries(get("/requests/all?from=0&size=10").header(USER_HEADER, ownerId), 1)
+                .andExpect(jsonPath("$[0].requestor.name").value("арендатор"));
+        expectQueries(get("/requests/{id}", requestId).header(USER_HEADER, ownerId), 1)
+                .andExpect(jsonPath("$.items", hasSize(ITEMS)));
+    }
+
+    private ResultActions expectQueries(RequestBuilder request, int queries) throws Exception {
+        return mvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryCountFilter.QUERY_COUNT_HEADER, String.valueOf(queries)));
+    }
+
+    private void insertBooking(LocalDateTime start, LocalDateTime end) {
+        jdbcTemplate.update("insert into bookings (start_date, end_date, item_id, booker_id, status) "
+                        + "values (?, ?, ?, ?, ?)", Timestamp.valueOf(start), Timestamp.valueOf(end), itemId, bookerId,
+                Status.APPROVED.name());
+    }
+}
@@ -0,0 +1,31 @@
+package ru.practicum.shareit;
+
+import net.ttddyy.dsproxy.QueryCountHolder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+// Бюджет запросов к базе для интеграционных тестов. Запросы считаются в текущем потоке с последнего
+// resetQueryCount(); незафиксированные изменения сущностей стоит сбросить через flush до него
+public final class QueryCountAssertions {
+
+    private QueryCountAssertions() {
+    }
+
+    public static void resetQueryCount() {
+        QueryCountHolder.clear();
+    }
+
+    public static long queryCount() {
+        return QueryCountHolder.getGrandTotal().getTotal();
+    }
+
+    public static void assertQueryCount(long max) {
+        assertThat("Число запросов к базе", queryCount(), lessThanOrEqualTo(max));
+    }
+
+    public static void assertQueryTime(long maxMillis) {
+        assertThat("Время запросов к базе, мс", QueryCountHolder.getGrandTotal().getTime(),
+                lessThanOrEqualTo(maxMillis));
+    }
+}
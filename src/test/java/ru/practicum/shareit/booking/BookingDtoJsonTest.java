@@ -32,7 +32,7 @@ public class BookingDtoJsonTest {
         user.setName("тестовый пользователь");
         user.setEmail("test@yandex.ru");
 
-        Item item = new Item(1, "вещь", "описание", true, userMapper.toUser(user), null);
+        Item item = new Item(1, "вещь", "описание", true, userMapper.toUser(user), null, null);
 
         BookingDtoIn bookingDtoIn = new BookingDtoIn();
         bookingDtoIn.setId(1);
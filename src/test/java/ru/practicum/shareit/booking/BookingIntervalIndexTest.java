@@ -0,0 +1,186 @@
+package ru.practicum.shareit.booking;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.shareit.booking.dto.BookingDtoForAvailability;
+import ru.practicum.shareit.booking.dto.BookingDtoForInterval;
+import ru.practicum.shareit.booking.model.Status;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+@ExtendWith(MockitoExtension.class)
+public class BookingIntervalIndexTest {
+    @Mock
+    BookingRepository bookingRepository;
+    BookingIntervalIndex bookingIntervalIndex;
+    LocalDateTime date;
+
+    @BeforeEach
+    void beforeEach() {
+        bookingIntervalIndex = new BookingIntervalIndex(bookingRepository, Duration.ofMinutes(30), 500);
+        date = LocalDateTime.of(2030, 1, 1, 0, 0);
+    }
+
+    @Test
+    void testHasOverlap() {
+        Mockito.when(bookingRepository.findAllByItemIdAndStatusOrderByStartAsc(anyInt(), Mockito.eq(Status.APPROVED)))
+                .thenReturn(List.of(interval(1, 3), interval(5, 7)));
+
+        Assertions.assertTrue(bookingIntervalIndex.hasOverlap(1, date.plusDays(2), date.plusDays(4)));
+        Assertions.assertTrue(bookingIntervalIndex.hasOverlap(1, date.plusDays(6), date.plusDays(10)));
+        Assertions.assertTrue(bookingIntervalIndex.hasOverlap(1, date, date.plusDays(10)));
+        Assertions.assertTrue(bookingIntervalIndex.hasOverlap(1, date.plusDays(5).plusHours(1), date.plusDays(6)));
+
+        // Интервалы, которые только касаются границ, не пересекаются
+        Assertions.assertFalse(bookingIntervalIndex.hasOverlap(1, date.plusDays(3), date.plusDays(5)));
+        Assertions.assertFalse(bookingIntervalIndex.hasOverlap(1, date, date.plusDays(1)));
+        Assertions.assertFalse(bookingIntervalIndex.hasOverlap(1, date.plusDays(7), date.plusDays(8)));
+
+        // Интервалы загружаются из базы один раз для каждой вещи
+        Mockito.verify(bookingRepository, Mockito.times(1)).findAllByItemIdAndStatusOrderByStartAsc(1, Status.APPROVED);
+    }
+
+    @Test
+    void testTryAdd() {
+        Mockito.when(bookingRepository.findAllByItemIdAndStatusOrderByStartAsc(anyInt(), Mockito.eq(Status.APPROVED)))
+                .thenReturn(List.of(interval(1, 3)));
+
+        Assertions.assertFalse(bookingIntervalIndex.tryAdd(1, date.plusDays(2), date.plusDays(4)));
+        Assertions.assertTrue(bookingIntervalIndex.tryAdd(1, date.plusDays(3), date.plusDays(4)));
+        Assertions.assertTrue(bookingIntervalIndex.hasOverlap(1, date.plusDays(3), date.plusDays(5)));
+
+        // Добавленный интервал не влияет на индекс другой вещи
+        Assertions.assertFalse(bookingIntervalIndex.hasOverlap(2, date.plusDays(3), date.plusDays(4)));
+    }
+
+    @Test
+    void testLoadMergesOverlappingBookings() {
+        Mockito.when(bookingRepository.findAllByItemIdAndStatusOrderByStartAsc(anyInt(), Mockito.eq(Status.APPROVED)))
+                .thenReturn(List.of(interval(1, 5), interval(2, 3), interval(4, 8)));
+
+        Assertions.assertTrue(bookingIntervalIndex.hasOverlap(1, date.plusDays(6), date.plusDays(7)));
+        Assertions.assertTrue(bookingIntervalIndex.hasOverlap(1, date.plusDays(7), date.plusDays(9)));
+        Assertions.assertFalse(bookingIntervalIndex.hasOverlap(1, date.plusDays(8), date.plusDays(9)));
+    }
+
+    @Test
+    void testPastIntervalsAreCheckedInDatabase() {
+        LocalDateTime past = LocalDateTime.now().minusDays(10);
+        Mockito.when(bookingRepository.findAllByItemIdAndStatusOrderByStartAsc(anyInt(), Mockito.eq(Status.APPROVED)))
+                .thenReturn(List.of(interval(past, past.plusDays(2)), interval(1, 3)));
+        Mockito.when(bookingRepository.existsByItemIdAndStatusAndStartIsBeforeAndEndIsAfter(1, Status.APPROVED,
+                past.plusDays(3), past.plusDays(1))).thenReturn(true);
+
+        // Закончившийся интервал удалён из памяти, пересечение с ним находит запрос к базе
+        Assertions.assertTrue(bookingIntervalIndex.hasOverlap(1, past.plusDays(1), past.plusDays(3)));
+        Assertions.assertFalse(bookingIntervalIndex.tryAdd(1, past.plusDays(1), past.plusDays(3)));
+        // Будущие интервалы проверяются без обращения к базе
+        Assertions.assertTrue(bookingIntervalIndex.hasOverlap(1, date.plusDays(2), date.plusDays(4)));
+        Assertions.assertTrue(bookingIntervalIndex.tryAdd(1, date.plusDays(3), date.plusDays(4)));
+
+        Mockito.verify(bookingRepository, Mockito.times(2)).existsByItemIdAndStatusAndStartIsBeforeAndEndIsAfter(
+                anyInt(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void testIdleItemsAreEvicted() {
+        bookingIntervalIndex = new BookingIntervalIndex(bookingRepository, Duration.ZERO, 500);
+        Mockito.when(bookingRepository.findAllByItemIdAndStatusOrderByStartAsc(anyInt(), Mockito.eq(Status.APPROVED)))
+                .thenReturn(List.of(interval(1, 3)));
+
+        Assertions.assertTrue(bookingIntervalIndex.hasOverlap(1, date.plusDays(2), date.plusDays(4)));
+        Assertions.assertFalse(bookingIntervalIndex.hasOverlap(2, date.plusDays(5), date.plusDays(6)));
+        // Обращение ко второй вещи выгрузило первую, к которой не обращались дольше ttl
+        Assertions.assertEquals(1, bookingIntervalIndex.trackedItems());
+        Assertions.assertTrue(bookingIntervalIndex.hasOverlap(1, date.plusDays(2), date.plusDays(4)));
+
+        Mockito.verify(bookingRepository, Mockito.times(2)).findAllByItemIdAndStatusOrderByStartAsc(1, Status.APPROVED);
+    }
+
+    @Test
+    void testPreloadLoadsItemsInBatches() {
+        bookingIntervalIndex = new BookingIntervalIndex(bookingRepository, Duration.ofMinutes(30), 2);
+        Mockito.when(bookingRepository.findAllIntervalsForItems(Mockito.eq(List.of(1, 2)), Mockito.eq(Status.APPROVED),
+                        any()))
+                .thenReturn(List.of(interval(1, 1, 3), interval(2, 5, 7)));
+
+        bookingIntervalIndex.preload(List.of(1, 2));
+        bookingIntervalIndex.preload(List.of(1, 2, 3));
+        Assertions.assertTrue(bookingIntervalIndex.hasOverlap(1, date.plusDays(2), date.plusDays(4)));
+        Assertions.assertFalse(bookingIntervalIndex.hasOverlap(1, date.plusDays(5), date.plusDays(6)));
+        Assertions.assertTrue(bookingIntervalIndex.hasOverlap(2, date.plusDays(5), date.plusDays(6)));
+        Assertions.assertFalse(bookingIntervalIndex.hasOverlap(3, date.plusDays(5), date.plusDays(6)));
+
+        // Уже загруженные вещи повторно не запрашиваются, вещь без бронирований загружается вместе с остальными
+        Mockito.verify(bookingRepository).findAllIntervalsForItems(Mockito.eq(List.of(3)), Mockito.eq(Status.APPROVED),
+                any());
+        Mockito.verify(bookingRepository, Mockito.never()).findAllByItemIdAndStatusOrderByStartAsc(anyInt(), any());
+    }
+
+    @Test
+    void testReloadReadsOnlyCurrentIntervals() {
+        LocalDateTime before = LocalDateTime.now();
+        bookingIntervalIndex.reload(List.of(1));
+
+        ArgumentCaptor<LocalDateTime> now = ArgumentCaptor.forClass(LocalDateTime.class);
+        Mockito.verify(bookingRepository).findAllIntervalsForItems(Mockito.eq(List.of(1)), Mockito.eq(Status.APPROVED),
+                now.capture());
+        Assertions.assertFalse(now.getValue().isBefore(before));
+
+        // Закончившиеся интервалы не загружены, поэтому бронирование, начавшееся раньше, проверяется по базе
+        LocalDateTime past = before.minusDays(3);
+        Assertions.assertTrue(bookingIntervalIndex.tryAdd(1, past, past.plusDays(1)));
+        Mockito.verify(bookingRepository).existsByItemIdAndStatusAndStartIsBeforeAndEndIsAfter(1, Status.APPROVED,
+                past.plusDays(1), past);
+    }
+
+    private BookingDtoForAvailability interval(int itemId, int startDay, int endDay) {
+        LocalDateTime start = date.plusDays(startDay);
+        LocalDateTime end = date.plusDays(endDay);
+        return new BookingDtoForAvailability() {
+            @Override
+            public Integer getItemId() {
+                return itemId;
+            }
+
+            @Override
+            public LocalDateTime getStart() {
+                return start;
+            }
+
+            @Override
+            public LocalDateTime getEnd() {
+                return end;
+            }
+        };
+    }
+
+    private BookingDtoForInterval interval(int startDay, int endDay) {
+        return interval(date.plusDays(startDay), date.plusDays(endDay));
+    }
+
+    private BookingDtoForInterval interval(LocalDateTime start, LocalDateTime end) {
+        return new BookingDtoForInterval() {
+            @Override
+            public LocalDateTime getStart() {
+                return start;
+            }
+
+            @Override
+            public LocalDateTime getEnd() {
+                return end;
+            }
+        };
+    }
+}
@@ -6,10 +6,14 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.shareit.booking.dto.BookingBatchResultDto;
 import ru.practicum.shareit.booking.dto.BookingDtoIn;
 import ru.practicum.shareit.booking.dto.BookingDtoOut;
+import ru.practicum.shareit.booking.dto.BookingStatusDto;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.Status;
 import ru.practicum.shareit.item.model.Item;
@@ -28,6 +32,7 @@ import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -101,9 +106,30 @@ public class BookingServiceControllerTest {
 
     }
 
+    @Test
+    void testCreateBookings() throws Exception {
+        when(bookingService.createBookings(anyList(), anyInt(), anyBoolean())).thenReturn(List.of(
+                new BookingBatchResultDto(0, bookingDtoOut, null),
+                new BookingBatchResultDto(1, null, "Вещь не найдена")));
+
+        mvc.perform(post("/bookings/batch?allOrNothing=false")
+                        .content(mapper.writeValueAsString(List.of(bookingDtoIn, bookingDtoIn)))
+                        .header("X-Sharer-User-Id", "1")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].index", is(0)))
+                .andExpect(jsonPath("$[0].booking.id", is(bookingDtoOut.getId())))
+                .andExpect(jsonPath("$[1].booking").doesNotExist())
+                .andExpect(jsonPath("$[1].error", is("Вещь не найдена")));
+    }
+
     @Test
     void testChangeStatus() throws Exception {
         bookingDtoOut.setStatus(Status.APPROVED);
+        bookingDtoOut.setRejectedCount(2);
         when(bookingService.changeStatus(anyInt(), anyInt(), anyBoolean())).thenReturn(bookingDtoOut);
 
         mvc.perform(patch("/bookings/1?approved=true")
@@ -117,7 +143,28 @@ public class BookingServiceControllerTest {
                 .andExpect(jsonPath("$.end", is(bookingDtoOut.getEnd().toString())))
                 .andExpect(jsonPath("$.status", is("APPROVED")))
                 .andExpect(jsonPath("$.item.id", is(bookingDtoOut.getItem().getId())))
-                .andExpect(jsonPath("$.booker.id", is(bookingDtoOut.getBooker().getId())));
+                .andExpect(jsonPath("$.booker.id", is(bookingDtoOut.getBooker().getId())))
+                .andExpect(jsonPath("$.rejectedCount").doesNotExist())
+                .andExpect(header().string("X-Rejected-Count", "2"));
+    }
+
+    @Test
+    void testChangeStatuses() throws Exception {
+        bookingDtoOut.setStatus(Status.APPROVED);
+        bookingDtoOut.setRejectedCount(2);
+        when(bookingService.changeStatuses(anyInt(), anyList())).thenReturn(List.of(bookingDtoOut));
+
+        mvc.perform(patch("/bookings/status")
+                        .content(mapper.writeValueAsString(List.of(new BookingStatusDto(bookingDtoOut.getId(), true))))
+                        .header("X-Sharer-User-Id", "1")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(bookingDtoOut.getId())))
+                .andExpect(jsonPath("$[0].status", is("APPROVED")))
+                .andExpect(header().string("X-Rejected-Count", "2"));
     }
 
     @Test
@@ -142,7 +189,7 @@ public class BookingServiceControllerTest {
 
     @Test
     void testGetAllForBooker() throws Exception {
-        when(bookingService.getAllForBooker(anyInt(), anyString(), any(), any())).thenReturn(List.of(bookingDtoOut));
+        when(bookingService.getAllForBooker(anyInt(), anyString(), any(), any())).thenReturn(new SliceImpl<>(List.of(bookingDtoOut)));
 
         mvc.perform(get("/bookings")
                         .header("X-Sharer-User-Id", "1")
@@ -161,7 +208,7 @@ public class BookingServiceControllerTest {
 
     @Test
     void testGetAllForOwner() throws Exception {
-        when(bookingService.getAllForOwner(anyInt(), anyString(), any(), any())).thenReturn(List.of(bookingDtoOut));
+        when(bookingService.getAllForOwner(anyInt(), anyString(), any(), any())).thenReturn(new SliceImpl<>(List.of(bookingDtoOut)));
 
         mvc.perform(get("/bookings/owner")
                         .header("X-Sharer-User-Id", "1")
@@ -177,4 +224,38 @@ public class BookingServiceControllerTest {
                 .andExpect(jsonPath("$[0].item.id", is(bookingDtoOut.getItem().getId())))
                 .andExpect(jsonPath("$[0].booker.id", is(bookingDtoOut.getBooker().getId())));
     }
+
+    @Test
+    void testGetAllForBookerAfterCursor() throws Exception {
+        when(bookingService.getAllForBookerAfter(anyInt(), anyString(), eq("2030-01-01T10:10:10,5"), eq(1)))
+                .thenReturn(new SliceImpl<>(List.of(bookingDtoOut), PageRequest.of(0, 1), true));
+
+        mvc.perform(get("/bookings")
+                        .header("X-Sharer-User-Id", "1")
+                        .param("after", "2030-01-01T10:10:10,5")
+                        .param("size", "1")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Has-More", "true"))
+                .andExpect(header().string("X-Next-Cursor", bookingDtoOut.getEnd() + "," + bookingDtoOut.getId()))
+                .andExpect(jsonPath("$.*", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(bookingDtoOut.getId())));
+
+        // Последняя страница - курсора нет
+        when(bookingService.getAllForOwnerAfter(anyInt(), anyString(), anyString(), eq(2)))
+                .thenReturn(new SliceImpl<>(List.of(bookingDtoOut)));
+        mvc.perform(get("/bookings/owner")
+                        .header("X-Sharer-User-Id", "1")
+                        .param("after", "2030-01-01T10:10:10,5")
+                        .param("size", "2")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Has-More", "false"))
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$.*", hasSize(1)));
+    }
 }
@@ -7,9 +7,12 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.dto.BookingBatchResultDto;
+import ru.practicum.shareit.booking.dto.BookingCursor;
 import ru.practicum.shareit.booking.dto.BookingDtoForItem;
 import ru.practicum.shareit.booking.dto.BookingDtoIn;
 import ru.practicum.shareit.booking.dto.BookingDtoOut;
+import ru.practicum.shareit.booking.dto.BookingStatusDto;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.Status;
 import ru.practicum.shareit.exceptions.ObjectNotFoundException;
@@ -22,14 +25,20 @@ import ru.practicum.shareit.user.UserMapper;
 import ru.practicum.shareit.user.UserMapperImpl;
 import ru.practicum.shareit.user.UserService;
 import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.model.User;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static ru.practicum.shareit.QueryCountAssertions.assertQueryCount;
+import static ru.practicum.shareit.QueryCountAssertions.resetQueryCount;
 
 @Transactional
 @SpringBootTest(
@@ -129,6 +138,114 @@ public class BookingServiceIntegrationTest {
 
     }
 
+    @Test
+    void testCreateOverlappingBooking() {
+        UserDto user3 = new UserDto();
+        user3.setName("третий");
+        user3.setEmail("third@yandex.ru");
+        user3 = userService.createUser(user3);
+        LocalDateTime start = LocalDateTime.now().plusDays(1).withNano(0);
+
+        BookingDtoIn first = new BookingDtoIn(null, start, start.plusDays(3), itemDto.getId(), null);
+        BookingDtoIn second = new BookingDtoIn(null, start.plusDays(1), start.plusDays(2), itemDto.getId(), null);
+        BookingDtoIn third = new BookingDtoIn(null, start.plusDays(3), start.plusDays(4), itemDto.getId(), null);
+
+        BookingDtoOut firstOut = bookingService.createBooking(first, user2.getId());
+        // Пересечение с бронированием, ожидающим подтверждения, допустимо
+        BookingDtoOut secondOut = bookingService.createBooking(second, user3.getId());
+        bookingService.changeStatus(user.getId(), firstOut.getId(), true);
+
+        // Подтвердить пересекающееся бронирование нельзя: при подтверждении первого оно уже отклонено
+        Assertions.assertThrows(ValidationException.class,
+                () -> bookingService.changeStatus(user.getId(), secondOut.getId(), true));
+        // Создать пересекающееся с подтверждённым бронирование нельзя
+        UserDto booker = user3;
+        Assertions.assertThrows(ValidationException.class, () -> bookingService.createBooking(second, booker.getId()));
+
+        BookingDtoOut thirdOut = bookingService.createBooking(third, user3.getId());
+        assertThat(bookingService.changeStatus(user.getId(), thirdOut.getId(), true).getStatus(), equalTo(Status.APPROVED));
+    }
+
+    @Test
+    void testApproveRejectsOverlappingWaiting() {
+        LocalDateTime start = LocalDateTime.now().plusDays(1).withNano(0);
+        BookingDtoOut approved = bookingService.createBooking(
+                new BookingDtoIn(null, start, start.plusDays(2), itemDto.getId(), null), user2.getId());
+        BookingDtoOut overlapping = bookingService.createBooking(
+                new BookingDtoIn(null, start.plusDays(1), start.plusDays(3), itemDto.getId(), null), user2.getId());
+        BookingDtoOut inside = bookingService.createBooking(
+                new BookingDtoIn(null, start.plusHours(1), start.plusHours(2), itemDto.getId(), null), user2.getId());
+        // Начинается в момент окончания подтверждаемого - не пересекается
+        BookingDtoOut adjacent = bookingService.createBooking(
+                new BookingDtoIn(null, start.plusDays(2), start.plusDays(3), itemDto.getId(), null), user2.getId());
+
+        BookingDtoOut bookingDtoOut = bookingService.changeStatus(user.getId(), approved.getId(), true);
+
+        assertThat(bookingDtoOut.getStatus(), equalTo(Status.APPROVED));
+        assertThat(bookingDtoOut.getRejectedCount(), equalTo(2));
+        List<Object[]> statuses = em.createQuery("select b.id, b.status from Booking b where b.item.id = :itemId " +
+                "order by b.id", Object[].class).setParameter("itemId", itemDto.getId()).getResultList();
+        assertThat(statuses.stream().map(status -> List.of(status[0], status[1])).collect(Collectors.toList()),
+                equalTo(List.of(List.of(approved.getId(), Status.APPROVED), List.of(overlapping.getId(), Status.REJECTED),
+                        List.of(inside.getId(), Status.REJECTED), List.of(adjacent.getId(), Status.WAITING))));
+    }
+
+    @Test
+    void testCreateBookingsInBatches() {
+        ItemDto secondItem = itemService.createItem(new ItemDto(null, "вторая вещь", "описание", true, null),
+                user.getId());
+        LocalDateTime start = LocalDateTime.now().plusDays(1).withNano(0);
+        List<BookingDtoIn> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(new BookingDtoIn(null, start.plusDays(i), start.plusDays(i + 1),
+                    i % 2 == 0 ? itemDto.getId() : secondItem.getId(), null));
+        }
+        batch.add(new BookingDtoIn(null, start, start.plusDays(1), itemDto.getId(), null));
+        em.flush();
+        em.clear();
+
+        resetQueryCount();
+        List<BookingBatchResultDto> results = bookingService.createBookings(batch, user2.getId(), false);
+        em.flush();
+        // Бронирующий, вещи, их подтверждённые интервалы, номера из последовательности и вставки пакетами по 50
+        assertQueryCount(10);
+        assertThat(results.stream().filter(result -> result.getBooking() != null).count(), equalTo(100L));
+        assertThat(results.get(100).getError(), equalTo("Бронирование пересекается с другим бронированием этой вещи в пакете"));
+        assertThat(em.createQuery("select count(b) from Booking b where b.booker.id = :bookerId", Long.class)
+                .setParameter("bookerId", user2.getId()).getSingleResult(), equalTo(100L));
+    }
+
+    @Test
+    void testChangeStatuses() {
+        LocalDateTime start = LocalDateTime.now().plusDays(1).withNano(0);
+        BookingDtoOut first = bookingService.createBooking(
+                new BookingDtoIn(null, start, start.plusDays(2), itemDto.getId(), null), user2.getId());
+        BookingDtoOut second = bookingService.createBooking(
+                new BookingDtoIn(null, start.plusDays(3), start.plusDays(4), itemDto.getId(), null), user2.getId());
+        BookingDtoOut overlapping = bookingService.createBooking(
+                new BookingDtoIn(null, start.plusDays(1), start.plusDays(3), itemDto.getId(), null), user2.getId());
+        em.flush();
+        em.clear();
+
+        resetQueryCount();
+        List<BookingDtoOut> bookings = bookingService.changeStatuses(user.getId(),
+                List.of(new BookingStatusDto(second.getId(), false), new BookingStatusDto(first.getId(), true)));
+        // Чтение с владельцами, два UPDATE статусов, отклонение пересекающихся и ответ
+        assertQueryCount(5);
+
+        assertThat(bookings.stream().map(BookingDtoOut::getStatus).collect(Collectors.toList()),
+                equalTo(List.of(Status.REJECTED, Status.APPROVED)));
+        assertThat(bookings.get(1).getBooker().getId(), equalTo(user2.getId()));
+        assertThat(bookings.get(1).getRejectedCount(), equalTo(1));
+        assertThat(em.find(Booking.class, overlapping.getId()).getStatus(), equalTo(Status.REJECTED));
+
+        // Уже обработанные бронирования повторно не меняются, чужие - не видны
+        Assertions.assertThrows(ValidationException.class, () -> bookingService.changeStatuses(user.getId(),
+                List.of(new BookingStatusDto(first.getId(), false))));
+        Assertions.assertThrows(ObjectNotFoundException.class, () -> bookingService.changeStatuses(user2.getId(),
+                List.of(new BookingStatusDto(overlapping.getId(), true))));
+    }
+
     @Test
     void testGetBookingById() {
         BookingDtoOut bookingDtoOut = bookingService.createBooking(bookingDtoIn, user2.getId());
@@ -154,45 +271,45 @@ public class BookingServiceIntegrationTest {
         bookingDtoOut1 = bookingService.changeStatus(user.getId(), bookingDtoOut1.getId(), false);
         BookingDtoOut bookingDtoOut2 = bookingService.createBooking(bookingDtoIn2, user2.getId());
 
-        Collection<BookingDtoOut> bookings = bookingService.getAllForBooker(user2.getId(), "ALL", null, null);
+        Collection<BookingDtoOut> bookings = bookingService.getAllForBooker(user2.getId(), "ALL", null, null).getContent();
         assertThat(bookings.size(), equalTo(2));
         Assertions.assertTrue(bookings.contains(bookingDtoOut1));
         Assertions.assertTrue(bookings.contains(bookingDtoOut2));
 
-        bookings = bookingService.getAllForBooker(user2.getId(), "PAST", null, null);
+        bookings = bookingService.getAllForBooker(user2.getId(), "PAST", null, null).getContent();
         assertThat(bookings.size(), equalTo(0));
 
-        bookings = bookingService.getAllForBooker(user2.getId(), "CURRENT", null, null);
+        bookings = bookingService.getAllForBooker(user2.getId(), "CURRENT", null, null).getContent();
         assertThat(bookings.size(), equalTo(0));
 
-        bookings = bookingService.getAllForBooker(user2.getId(), "FUTURE", null, null);
+        bookings = bookingService.getAllForBooker(user2.getId(), "FUTURE", null, null).getContent();
         assertThat(bookings.size(), equalTo(2));
         Assertions.assertTrue(bookings.contains(bookingDtoOut1));
         Assertions.assertTrue(bookings.contains(bookingDtoOut2));
 
-        bookings = bookingService.getAllForBooker(user2.getId(), "REJECTED", null, null);
+        bookings = bookingService.getAllForBooker(user2.getId(), "REJECTED", null, null).getContent();
         assertThat(bookings.size(), equalTo(1));
         Assertions.assertTrue(bookings.contains(bookingDtoOut1));
 
-        bookings = bookingService.getAllForBooker(user2.getId(), "WAITING", null, null);
+        bookings = bookingService.getAllForBooker(user2.getId(), "WAITING", null, null).getContent();
         assertThat(bookings.size(), equalTo(1));
         Assertions.assertTrue(bookings.contains(bookingDtoOut2));
 
-        bookings = bookingService.getAllForBooker(user2.getId(), "ALL", 0, 1);
+        bookings = bookingService.getAllForBooker(user2.getId(), "ALL", 0, 1).getContent();
         assertThat(bookings.size(), equalTo(1));
         Assertions.assertTrue(bookings.contains(bookingDtoOut1));
 
-        bookings = bookingService.getAllForBooker(user2.getId(), "CURRENT", 0, 1);
+        bookings = bookingService.getAllForBooker(user2.getId(), "CURRENT", 0, 1).getContent();
         assertThat(bookings.size(), equalTo(0));
 
-        bookings = bookingService.getAllForBooker(user2.getId(), "PAST", 0, 1);
+        bookings = bookingService.getAllForBooker(user2.getId(), "PAST", 0, 1).getContent();
         assertThat(bookings.size(), equalTo(0));
 
-        bookings = bookingService.getAllForBooker(user2.getId(), "FUTURE", 0, 1);
+        bookings = bookingService.getAllForBooker(user2.getId(), "FUTURE", 0, 1).getContent();
         assertThat(bookings.size(), equalTo(1));
         Assertions.assertTrue(bookings.contains(bookingDtoOut1));
 
-        bookings = bookingService.getAllForBooker(user2.getId(), "WAITING", 0, 1);
+        bookings = bookingService.getAllForBooker(user2.getId(), "WAITING", 0, 1).getContent();
         assertThat(bookings.size(), equalTo(1));
         Assertions.assertTrue(bookings.contains(bookingDtoOut2));
 
@@ -214,45 +331,45 @@ public class BookingServiceIntegrationTest {
         bookingDtoOut1 = bookingService.changeStatus(user.getId(), bookingDtoOut1.getId(), false);
         BookingDtoOut bookingDtoOut2 = bookingService.createBooking(bookingDtoIn2, user2.getId());
 
-        Collection<BookingDtoOut> bookings = bookingService.getAllForOwner(user.getId(), "ALL", null, null);
+        Collection<BookingDtoOut> bookings = bookingService.getAllForOwner(user.getId(), "ALL", null, null).getContent();
         assertThat(bookings.size(), equalTo(2));
         Assertions.assertTrue(bookings.contains(bookingDtoOut1));
         Assertions.assertTrue(bookings.contains(bookingDtoOut2));
 
-        bookings = bookingService.getAllForOwner(user.getId(), "PAST", null, null);
+        bookings = bookingService.getAllForOwner(user.getId(), "PAST", null, null).getContent();
         assertThat(bookings.size(), equalTo(0));
 
-        bookings = bookingService.getAllForOwner(user.getId(), "CURRENT", null, null);
+        bookings = bookingService.getAllForOwner(user.getId(), "CURRENT", null, null).getContent();
         assertThat(bookings.size(), equalTo(0));
 
-        bookings = bookingService.getAllForOwner(user.getId(), "FUTURE", null, null);
+        bookings = bookingService.getAllForOwner(user.getId(), "FUTURE", null, null).getContent();
         assertThat(bookings.size(), equalTo(2));
         Assertions.assertTrue(bookings.contains(bookingDtoOut1));
         Assertions.assertTrue(bookings.contains(bookingDtoOut2));
 
-        bookings = bookingService.getAllForOwner(user.getId(), "REJECTED", null, null);
+        bookings = bookingService.getAllForOwner(user.getId(), "REJECTED", null, null).getContent();
         assertThat(bookings.size(), equalTo(1));
         Assertions.assertTrue(bookings.contains(bookingDtoOut1));
 
-        bookings = bookingService.getAllForOwner(user.getId(), "WAITING", null, null);
+        bookings = bookingService.getAllForOwner(user.getId(), "WAITING", null, null).getContent();
         assertThat(bookings.size(), equalTo(1));
         Assertions.assertTrue(bookings.contains(bookingDtoOut2));
 
-        bookings = bookingService.getAllForOwner(user.getId(), "ALL", 0, 1);
+        bookings = bookingService.getAllForOwner(user.getId(), "ALL", 0, 1).getContent();
         assertThat(bookings.size(), equalTo(1));
         Assertions.assertTrue(bookings.contains(bookingDtoOut1));
 
-        bookings = bookingService.getAllForOwner(user.getId(), "CURRENT", 0, 1);
+        bookings = bookingService.getAllForOwner(user.getId(), "CURRENT", 0, 1).getContent();
         assertThat(bookings.size(), equalTo(0));
 
-        bookings = bookingService.getAllForOwner(user.getId(), "PAST", 0, 1);
+        bookings = bookingService.getAllForOwner(user.getId(), "PAST", 0, 1).getContent();
         assertThat(bookings.size(), equalTo(0));
 
-        bookings = bookingService.getAllForOwner(user.getId(), "FUTURE", 0, 1);
+        bookings = bookingService.getAllForOwner(user.getId(), "FUTURE", 0, 1).getContent();
         assertThat(bookings.size(), equalTo(1));
         Assertions.assertTrue(bookings.contains(bookingDtoOut1));
 
-        bookings = bookingService.getAllForOwner(user.getId(), "WAITING", 0, 1);
+        bookings = bookingService.getAllForOwner(user.getId(), "WAITING", 0, 1).getContent();
         assertThat(bookings.size(), equalTo(1));
         Assertions.assertTrue(bookings.contains(bookingDtoOut2));
 
@@ -321,4 +438,52 @@ public class BookingServiceIntegrationTest {
 
     }
 
+
+    @Test
+    void testGetAllAfterCursor() {
+        Item itemFromDB = em.find(Item.class, itemDto.getId());
+        User booker = em.find(User.class, user2.getId());
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        // Два бронирования с одинаковой датой окончания, чтобы проверить сравнение по id
+        for (int i = 0; i < 5; i++) {
+            Booking booking = new Booking();
+            booking.setItem(itemFromDB);
+            booking.setBooker(booker);
+            booking.setStart(now.minusDays(10 + i));
+            booking.setEnd(now.minusDays(i == 4 ? 3 : i + 1));
+            booking.setStatus(Status.APPROVED);
+            em.persist(booking);
+        }
+        em.flush();
+
+        List<BookingDtoOut> expected = new ArrayList<>(bookingService.getAllForBooker(user2.getId(), "PAST", null, null).getContent());
+        assertThat(expected.size(), equalTo(5));
+
+        List<BookingDtoOut> bookerPages = new ArrayList<>(bookingService.getAllForBooker(user2.getId(), "PAST", 0, 2).getContent());
+        List<BookingDtoOut> ownerPages = new ArrayList<>(bookingService.getAllForOwner(user.getId(), "ALL", 0, 2).getContent());
+        while (bookerPages.size() < 5) {
+            String after = BookingCursor.of(bookerPages.get(bookerPages.size() - 1)).toToken();
+            bookerPages.addAll(bookingService.getAllForBookerAfter(user2.getId(), "PAST", after, 2).getContent());
+            ownerPages.addAll(bookingService.getAllForOwnerAfter(user.getId(), "ALL", after, 2).getContent());
+        }
+        assertThat(bookerPages, equalTo(expected));
+        assertThat(ownerPages, equalTo(expected));
+
+        em.clear();
+        resetQueryCount();
+        bookingService.getAllForOwnerAfter(user.getId(), "ALL", BookingCursor.of(expected.get(1)).toToken(), 2);
+        // Владелец и страница бронирований вместе с вещами и бронирующими
+        assertQueryCount(4);
+
+        String after = BookingCursor.of(expected.get(4)).toToken();
+        assertThat(bookingService.getAllForBookerAfter(user2.getId(), "ALL", after, 2).getContent().size(), equalTo(0));
+        assertThat(bookingService.getAllForBookerAfter(user2.getId(), "FUTURE", after, 2).getContent().size(), equalTo(0));
+
+        Assertions.assertThrows(ValidationException.class,
+                () -> bookingService.getAllForBookerAfter(user2.getId(), "ALL", "вчера", 2));
+        Assertions.assertThrows(ValidationException.class,
+                () -> bookingService.getAllForBookerAfter(user2.getId(), "ALL", after, null));
+        Assertions.assertThrows(ValidationException.class,
+                () -> bookingService.getAllForOwnerAfter(user.getId(), "NO_STATE", after, 2));
+    }
 }
@@ -4,16 +4,26 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import ru.practicum.shareit.booking.dto.BookingBatchResultDto;
+import ru.practicum.shareit.booking.dto.BookingDtoForAvailability;
+import ru.practicum.shareit.booking.dto.BookingDtoForStatusChange;
 import ru.practicum.shareit.booking.dto.BookingDtoIn;
 import ru.practicum.shareit.booking.dto.BookingDtoOut;
+import ru.practicum.shareit.booking.dto.BookingStatusDto;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.config.TransactionRetry;
 import ru.practicum.shareit.exceptions.ObjectNotFoundException;
 import ru.practicum.shareit.exceptions.ValidationException;
+import ru.practicum.shareit.item.dto.AvailabilityWindowDto;
 import ru.practicum.shareit.item.ItemService;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.UserMapper;
@@ -22,12 +32,19 @@ import ru.practicum.shareit.user.UserService;
 import ru.practicum.shareit.user.dto.UserDto;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 
 @ExtendWith(MockitoExtension.class)
 public class BookingServiceTest {
@@ -38,6 +55,14 @@ public class BookingServiceTest {
     ItemService itemService;
     @Mock
     UserService userService;
+    @Mock
+    BookingIntervalIndex bookingIntervalIndex;
+    @Mock
+    NextLastBookingCache nextLastBookingCache;
+    @Mock
+    ItemLocks itemLocks;
+    @Mock
+    TransactionRetry transactionRetry;
     BookingService bookingService;
 
     UserDto user;
@@ -49,7 +74,12 @@ public class BookingServiceTest {
     @BeforeEach
     void beforeEach() {
         bookingMapper = new BookingMapperImpl();
-        bookingService = new BookingServiceImpl(bookingRepository, bookingMapper, userService, itemService);
+        Mockito.lenient().when(transactionRetry.execute(any()))
+                .thenAnswer(invocationOnMock -> invocationOnMock.getArgument(0, Supplier.class).get());
+        Mockito.lenient().when(itemLocks.callLocked(any(), any()))
+                .thenAnswer(invocationOnMock -> invocationOnMock.getArgument(1, Supplier.class).get());
+        bookingService = new BookingServiceImpl(bookingRepository, bookingMapper, userService, itemService, bookingIntervalIndex,
+                nextLastBookingCache, itemLocks, transactionRetry, 500, 1000);
 
         user = new UserDto();
         user.setId(1);
@@ -60,7 +90,7 @@ public class BookingServiceTest {
         user2.setName("www");
         user2.setEmail("www@yandex.ru");
         UserMapper userMapper = new UserMapperImpl();
-        item = new Item(1, "вещь", "описание", true, userMapper.toUser(user), null);
+        item = new Item(1, "вещь", "описание", true, userMapper.toUser(user), null, null);
 
         bookingDtoIn = new BookingDtoIn(1,
                 LocalDateTime.of(2024, 6, 20, 0, 0),
@@ -92,6 +122,128 @@ public class BookingServiceTest {
         Assertions.assertThrows(ValidationException.class, () -> bookingService.createBooking(bookingDtoIn, user2.getId()));
     }
 
+    @Test
+    void testCreateOverlappingBooking() {
+        bookingDtoIn.setStart(LocalDateTime.now().plusDays(1));
+        bookingDtoIn.setEnd(LocalDateTime.now().plusDays(2));
+        Mockito.when(userService.getUserById(anyInt())).thenReturn(user2);
+        Mockito.when(itemService.getItemForBooking(anyInt())).thenReturn(item);
+        Mockito.when(bookingIntervalIndex.hasOverlap(anyInt(), any(), any())).thenReturn(true);
+
+        // Вещь уже забронирована на пересекающиеся даты
+        Assertions.assertThrows(ValidationException.class, () -> bookingService.createBooking(bookingDtoIn, user2.getId()));
+        Mockito.verify(bookingIntervalIndex, Mockito.times(1))
+                .hasOverlap(item.getId(), bookingDtoIn.getStart(), bookingDtoIn.getEnd());
+        Mockito.verify(bookingRepository, Mockito.never()).save(any());
+    }
+
+    @Test
+    void testCreateBookings() {
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        List<BookingDtoIn> batch = List.of(
+                new BookingDtoIn(null, start, start.plusDays(2), item.getId(), null),
+                new BookingDtoIn(null, start.plusDays(1), start.plusDays(3), item.getId(), null),
+                new BookingDtoIn(null, start.plusDays(2), start.plusDays(3), item.getId(), null),
+                new BookingDtoIn(null, start, start.plusDays(1), 3, null),
+                new BookingDtoIn(null, start.plusDays(1), start, item.getId(), null));
+        Mockito.when(userService.getUserById(anyInt())).thenReturn(user2);
+        Mockito.when(itemService.getItemsForBooking(any())).thenReturn(Map.of(item.getId(), item));
+        Mockito.when(bookingRepository.saveAll(anyList())).thenAnswer(invocationOnMock -> invocationOnMock.getArgument(0));
+
+        List<BookingBatchResultDto> results = bookingService.createBookings(batch, user2.getId(), false);
+        Assertions.assertEquals(Arrays.asList(null, "Бронирование пересекается с другим бронированием этой вещи в пакете",
+                        null, "Вещь не найдена", "Даты бронирования некорректные"),
+                results.stream().map(BookingBatchResultDto::getError).collect(Collectors.toList()));
+        Assertions.assertEquals(start.plusDays(2), results.get(2).getBooking().getStart());
+        Assertions.assertNull(results.get(1).getBooking());
+        // Вещи загружаются и блокируются одним вызовом, бронирования сохраняются одним пакетом
+        Mockito.verify(itemService).getItemsForBooking(Set.of(item.getId(), 3));
+        Mockito.verify(bookingIntervalIndex).preload(Set.of(item.getId()));
+        Mockito.verify(itemLocks).callLocked(eq(Set.of(item.getId(), 3)), any());
+        Mockito.verify(itemLocks).lockRowsUntilCompletion(Set.of(item.getId(), 3));
+        Mockito.verify(bookingRepository).saveAll(List.of(bookingMapper.toBooking(batch.get(0), user2, item),
+                bookingMapper.toBooking(batch.get(2), user2, item)).stream()
+                .peek(booking -> booking.setStatus(Status.WAITING)).collect(Collectors.toList()));
+
+        // В режиме "всё или ничего" первая ошибка отменяет весь пакет
+        ValidationException e = Assertions.assertThrows(ValidationException.class,
+                () -> bookingService.createBookings(batch, user2.getId(), true));
+        Assertions.assertEquals("Бронирование 1: Бронирование пересекается с другим бронированием этой вещи в пакете",
+                e.getMessage());
+        Mockito.verify(bookingRepository, Mockito.times(1)).saveAll(anyList());
+
+        bookingService = new BookingServiceImpl(bookingRepository, bookingMapper, userService, itemService, bookingIntervalIndex,
+                nextLastBookingCache, itemLocks, transactionRetry, 500, 2);
+        Assertions.assertThrows(ValidationException.class, () -> bookingService.createBookings(batch, user2.getId(), false));
+    }
+
+    @Test
+    void testApproveOverlappingBooking() {
+        Mockito.when(bookingRepository.findById(anyInt())).thenReturn(Optional.of(booking));
+        Mockito.when(bookingIntervalIndex.tryAdd(anyInt(), any(), any())).thenReturn(false);
+
+        Assertions.assertThrows(ValidationException.class, () -> bookingService.changeStatus(user.getId(), booking.getId(), true));
+        Assertions.assertEquals(Status.WAITING, booking.getStatus());
+        Mockito.verify(bookingRepository, Mockito.never()).save(any());
+        Mockito.verify(nextLastBookingCache, Mockito.never()).addOnCommit(any());
+
+        Mockito.when(bookingIntervalIndex.tryAdd(anyInt(), any(), any())).thenReturn(true);
+        Mockito.when(bookingRepository.save(any())).thenReturn(booking);
+        Mockito.when(bookingRepository.findItemIdById(anyInt())).thenReturn(Optional.of(item.getId()));
+        Mockito.when(bookingRepository.updateStatusOfOverlapping(item.getId(), booking.getStart(), booking.getEnd(),
+                booking.getId(), Status.WAITING, Status.REJECTED)).thenReturn(2);
+        BookingDtoOut bookingDtoOut = bookingService.changeStatus(user.getId(), booking.getId(), true);
+        // Статус бронирования читается уже под блокировкой вещи
+        InOrder inOrder = Mockito.inOrder(itemLocks, bookingRepository);
+        inOrder.verify(itemLocks).callLocked(eq(List.of(item.getId())), any());
+        inOrder.verify(itemLocks).lockRowsUntilCompletion(List.of(item.getId()));
+        inOrder.verify(bookingRepository).findById(booking.getId());
+        Assertions.assertEquals(Status.APPROVED, bookingDtoOut.getStatus());
+        // Пересекающиеся ожидающие бронирования отклонены одним запросом
+        Assertions.assertEquals(2, bookingDtoOut.getRejectedCount());
+        // Подтверждённое бронирование попадает в кэш следующего и последнего бронирования
+        Mockito.verify(nextLastBookingCache).addOnCommit(booking);
+    }
+
+    @Test
+    void testChangeStatuses() {
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        Mockito.when(bookingRepository.findAllForStatusChange(List.of(10, 11))).thenReturn(List.of(
+                statusChange(10, user.getId(), start, Status.WAITING),
+                statusChange(11, user.getId(), start.plusDays(1), Status.WAITING)));
+        Mockito.when(bookingIntervalIndex.tryAdd(anyInt(), any(), any())).thenReturn(true);
+        Mockito.when(bookingRepository.updateStatus(List.of(10), Status.WAITING, Status.APPROVED)).thenReturn(1);
+        Mockito.when(bookingRepository.updateStatus(List.of(11), Status.WAITING, Status.REJECTED)).thenReturn(1);
+        Mockito.when(bookingRepository.updateStatusOfOverlapping(item.getId(), start, start.plusDays(1), 10,
+                Status.WAITING, Status.REJECTED)).thenReturn(3);
+        Mockito.when(bookingRepository.findAllDtoByIdIn(List.of(10, 11))).thenReturn(List.of(
+                bookingDtoOut(11, Status.REJECTED), bookingDtoOut(10, Status.APPROVED)));
+
+        List<BookingDtoOut> bookings = bookingService.changeStatuses(user.getId(),
+                List.of(new BookingStatusDto(10, true), new BookingStatusDto(11, false)));
+
+        // Ответ в порядке запроса, у подтверждённого - число отклонённых пересекающихся бронирований
+        Assertions.assertEquals(List.of(10, 11), bookings.stream().map(BookingDtoOut::getId).collect(Collectors.toList()));
+        Assertions.assertEquals(3, bookings.get(0).getRejectedCount());
+        Assertions.assertNull(bookings.get(1).getRejectedCount());
+        Mockito.verify(itemLocks).callLocked(eq(Set.of(item.getId())), any());
+        Mockito.verify(itemLocks).lockRowsUntilCompletion(Set.of(item.getId()));
+        Mockito.verify(bookingIntervalIndex, Mockito.times(1)).tryAdd(item.getId(), start, start.plusDays(1));
+        Mockito.verify(nextLastBookingCache).addAllOnCommit(any());
+        Mockito.verify(bookingRepository, Mockito.never()).save(any());
+
+        // Статус успели изменить после чтения - транзакция повторяется
+        Mockito.when(bookingRepository.updateStatus(List.of(11), Status.WAITING, Status.REJECTED)).thenReturn(0);
+        Assertions.assertThrows(OptimisticLockingFailureException.class, () -> bookingService.changeStatuses(user.getId(),
+                List.of(new BookingStatusDto(10, true), new BookingStatusDto(11, false))));
+
+        Assertions.assertThrows(ObjectNotFoundException.class, () -> bookingService.changeStatuses(user2.getId(),
+                List.of(new BookingStatusDto(10, true), new BookingStatusDto(11, false))));
+        Assertions.assertThrows(ValidationException.class, () -> bookingService.changeStatuses(user.getId(),
+                List.of(new BookingStatusDto(10, true), new BookingStatusDto(10, false))));
+        Assertions.assertThrows(ValidationException.class, () -> bookingService.changeStatuses(user.getId(), List.of()));
+    }
+
     @Test
     void testChangeStatus() {
         Mockito.when(bookingRepository.save(any())).thenReturn(booking);
@@ -109,6 +261,8 @@ public class BookingServiceTest {
         Mockito.verify(bookingRepository, Mockito.times(1)).save(booking);
 
         Assertions.assertEquals(Status.REJECTED, bookingDtoOut.getStatus());
+        Mockito.verify(bookingRepository, Mockito.never())
+                .updateStatusOfOverlapping(anyInt(), any(), any(), anyInt(), any(), any());
 
         // Пробуем изменить статус бронирования не владельцем вещи
         booking.setStatus(Status.WAITING);
@@ -149,17 +303,18 @@ public class BookingServiceTest {
 
     @Test
     void testGetAllForBooker() {
-        Mockito.when(bookingRepository.findAllByBookerIdOrderByEndDesc(anyInt())).thenReturn(List.of(booking));
+        Mockito.when(bookingRepository.findAllByBookerId(anyInt(), any()))
+                .thenReturn(new SliceImpl<>(List.of(bookingMapper.toBookingDtoOut(booking))));
         Mockito.when(userService.getUserById(anyInt())).thenReturn(user2);
-        Collection<BookingDtoOut> bookings = bookingService.getAllForBooker(user2.getId(), "ALL", null, null);
+        Collection<BookingDtoOut> bookings = bookingService.getAllForBooker(user2.getId(), "ALL", null, null).getContent();
         Assertions.assertTrue(bookings.contains(bookingMapper.toBookingDtoOut(booking)));
 
         Assertions.assertThrows(ValidationException.class, () -> bookingService.getAllForBooker(user2.getId(), "TEST", null, null));
 
-        Mockito.verify(bookingRepository, Mockito.times(1)).findAllByBookerIdOrderByEndDesc(user2.getId());
+        Mockito.verify(bookingRepository, Mockito.times(1)).findAllByBookerId(user2.getId(), Pageable.unpaged());
 
         Mockito.when(bookingRepository.findAllByBookerIdAndStatus(anyInt(), any(), any())).thenReturn(Page.empty());
-        bookings = bookingService.getAllForBooker(user2.getId(), "REJECTED", 0, 10);
+        bookings = bookingService.getAllForBooker(user2.getId(), "REJECTED", 0, 10).getContent();
         Assertions.assertTrue(bookings.isEmpty());
 
         Assertions.assertThrows(ValidationException.class, () -> bookingService.getAllForBooker(user2.getId(), "REJECTED", -5, 10));
@@ -169,21 +324,117 @@ public class BookingServiceTest {
 
     @Test
     void testGetAllForOwner() {
-        Mockito.when(bookingRepository.findAllByItemOwnerIdOrderByEndDesc(anyInt())).thenReturn(List.of(booking));
+        Mockito.when(bookingRepository.findAllByItemOwnerId(anyInt(), any()))
+                .thenReturn(new SliceImpl<>(List.of(bookingMapper.toBookingDtoOut(booking))));
         Mockito.when(userService.getUserById(anyInt())).thenReturn(user2);
-        Collection<BookingDtoOut> bookings = bookingService.getAllForOwner(user2.getId(), "ALL", null, null);
+        Collection<BookingDtoOut> bookings = bookingService.getAllForOwner(user2.getId(), "ALL", null, null).getContent();
         Assertions.assertTrue(bookings.contains(bookingMapper.toBookingDtoOut(booking)));
 
         Assertions.assertThrows(ValidationException.class, () -> bookingService.getAllForOwner(user2.getId(), "TEST", null, null));
 
-        Mockito.verify(bookingRepository, Mockito.times(1)).findAllByItemOwnerIdOrderByEndDesc(user2.getId());
+        Mockito.verify(bookingRepository, Mockito.times(1)).findAllByItemOwnerId(user2.getId(), Pageable.unpaged());
 
         Mockito.when(bookingRepository.findAllByItemOwnerIdAndStatus(anyInt(), any(), any())).thenReturn(Page.empty());
-        bookings = bookingService.getAllForOwner(user2.getId(), "REJECTED", 0, 10);
+        bookings = bookingService.getAllForOwner(user2.getId(), "REJECTED", 0, 10).getContent();
         Assertions.assertTrue(bookings.isEmpty());
 
         Assertions.assertThrows(ValidationException.class, () -> bookingService.getAllForOwner(user2.getId(), "REJECTED", -5, 10));
         Assertions.assertThrows(ValidationException.class, () -> bookingService.getAllForOwner(user2.getId(), "REJECTED", 5, -5));
 
     }
+
+    @Test
+    void testGetBusyWindows() {
+        LocalDateTime from = LocalDateTime.of(2030, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2030, 1, 10, 0, 0);
+        Mockito.when(bookingRepository.findAllForAvailability(anyList(), anyList(), any(), any())).thenReturn(List.of(
+                busyInterval(1, from.minusDays(1), from.plusDays(1)),
+                busyInterval(1, from.plusDays(1), from.plusDays(2)),
+                busyInterval(1, from.plusDays(3), from.plusDays(5)),
+                busyInterval(1, from.plusDays(4), from.plusDays(4).plusHours(1)),
+                busyInterval(2, from.plusDays(8), to.plusDays(1))));
+
+        Map<Integer, List<AvailabilityWindowDto>> windows = bookingService.getBusyWindows(List.of(1, 2, 3), from, to, true);
+        Mockito.verify(bookingRepository, Mockito.times(1)).findAllForAvailability(List.of(1, 2, 3),
+                List.of(Status.APPROVED, Status.WAITING), from, to);
+
+        Assertions.assertEquals(List.of(new AvailabilityWindowDto(from, from.plusDays(2)),
+                new AvailabilityWindowDto(from.plusDays(3), from.plusDays(5))), windows.get(1));
+        Assertions.assertEquals(List.of(new AvailabilityWindowDto(from.plusDays(8), to)), windows.get(2));
+        Assertions.assertNull(windows.get(3));
+
+        // Вещи запрашиваются пачками не больше заданного размера
+        bookingService = new BookingServiceImpl(bookingRepository, bookingMapper, userService, itemService, bookingIntervalIndex,
+                nextLastBookingCache, itemLocks, transactionRetry, 2, 1000);
+        bookingService.getBusyWindows(List.of(1, 2, 3), from, to, false);
+        Mockito.verify(bookingRepository, Mockito.times(1)).findAllForAvailability(List.of(1, 2),
+                List.of(Status.APPROVED), from, to);
+        Mockito.verify(bookingRepository, Mockito.times(1)).findAllForAvailability(List.of(3),
+                List.of(Status.APPROVED), from, to);
+    }
+
+    private BookingDtoForAvailability busyInterval(int itemId, LocalDateTime start, LocalDateTime end) {
+        return new BookingDtoForAvailability() {
+            @Override
+            public Integer getItemId() {
+                return itemId;
+            }
+
+            @Override
+            public LocalDateTime getStart() {
+                return start;
+            }
+
+            @Override
+            public LocalDateTime getEnd() {
+                return end;
+            }
+        };
+    }
+
+    private BookingDtoForStatusChange statusChange(int id, int ownerId, LocalDateTime start, Status status) {
+        return new BookingDtoForStatusChange() {
+            @Override
+            public Integer getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getBookerId() {
+                return user2.getId();
+            }
+
+            @Override
+            public Integer getItemId() {
+                return item.getId();
+            }
+
+            @Override
+            public Integer getOwnerId() {
+                return ownerId;
+            }
+
+            @Override
+            public LocalDateTime getStart() {
+                return start;
+            }
+
+            @Override
+            public LocalDateTime getEnd() {
+                return start.plusDays(1);
+            }
+
+            @Override
+            public Status getStatus() {
+                return status;
+            }
+        };
+    }
+
+    private BookingDtoOut bookingDtoOut(int id, Status status) {
+        BookingDtoOut bookingDtoOut = bookingMapper.toBookingDtoOut(booking);
+        bookingDtoOut.setId(id);
+        bookingDtoOut.setStatus(status);
+        return bookingDtoOut;
+    }
 }
@@ -0,0 +1,105 @@
+package ru.practicum.shareit.booking;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.exceptions.ConflictException;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+public class ItemLocksTest {
+    ItemLocks itemLocks = new ItemLocks(null, null, ItemLocks.Mode.LOCAL, 1024, Duration.ofMillis(50), 500);
+
+    @AfterEach
+    void afterEach() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            completeTransaction();
+        }
+    }
+
+    @Test
+    void testLockHeldUntilTransactionCompletes() {
+        // Внутри уже начатой транзакции блокировка держится до её конца, а не до конца действия
+        TransactionSynchronizationManager.initSynchronization();
+        itemLocks.callLocked(List.of(1), () -> null);
+        // Повторная блокировка той же вещи в той же транзакции не ждёт
+        itemLocks.callLocked(List.of(1), () -> null);
+
+        // Другой поток ждёт ту же вещь и не дожидается, а другую вещь блокирует сразу
+        Assertions.assertThrows(ConflictException.class, () -> lockInOtherThread(1));
+        Assertions.assertDoesNotThrow(() -> lockInOtherThread(2));
+
+        completeTransaction();
+        Assertions.assertDoesNotThrow(() -> lockInOtherThread(1));
+    }
+
+    @Test
+    void testCallLockedReleasesAfterAction() {
+        // Повторы и общие полосы не мешают: каждая полоса блокируется один раз
+        itemLocks.callLocked(List.of(3, 1, 2, 1, 3 + 1024), () -> {
+            Assertions.assertThrows(ConflictException.class, () -> lockInOtherThread(2));
+            return null;
+        });
+        Assertions.assertDoesNotThrow(() -> lockInOtherThread(1));
+        Assertions.assertDoesNotThrow(() -> lockInOtherThread(3));
+    }
+
+    @Test
+    void testFailedCallLockedReleasesTakenStripes() {
+        TransactionSynchronizationManager.initSynchronization();
+        itemLocks.callLocked(List.of(2), () -> null);
+
+        // Вещь 2 занята этой транзакцией: другой поток не дожидается её и отпускает уже взятую вещь 1
+        Assertions.assertThrows(ConflictException.class, () -> {
+            try {
+                CompletableFuture.runAsync(() -> itemLocks.callLocked(List.of(1, 2), () -> null)).join();
+            } catch (RuntimeException e) {
+                throw (RuntimeException) e.getCause();
+            }
+        });
+        Assertions.assertDoesNotThrow(() -> lockInOtherThread(1));
+    }
+
+    @Test
+    void testRowLocksOnlyInDatabaseMode() {
+        // В режиме LOCAL строки вещей не блокируются и репозиторий не нужен
+        Assertions.assertDoesNotThrow(() -> itemLocks.lockRowsUntilCompletion(List.of(1, 2)));
+    }
+
+    @Test
+    void testStripesSpreadSequentialIds() {
+        Set<Integer> stripes = new HashSet<>();
+        for (int itemId = 1; itemId <= 100; itemId++) {
+            stripes.add(itemLocks.stripe(itemId));
+        }
+        Assertions.assertTrue(stripes.size() > 90);
+    }
+
+    private void lockInOtherThread(int itemId) {
+        try {
+            CompletableFuture.runAsync(() -> {
+                TransactionSynchronizationManager.initSynchronization();
+                try {
+                    itemLocks.callLocked(List.of(itemId), () -> null);
+                } finally {
+                    completeTransaction();
+                }
+            }).join();
+        } catch (RuntimeException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private static void completeTransaction() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+}
@@ -0,0 +1,151 @@
+package ru.practicum.shareit.booking;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+import ru.practicum.shareit.ShareItApp;
+import ru.practicum.shareit.booking.dto.BookingDtoIn;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.exceptions.ValidationException;
+import ru.practicum.shareit.item.ItemService;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.user.UserService;
+import ru.practicum.shareit.user.dto.UserDto;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// Два экземпляра приложения с общей файловой H2: блокировки в памяти у каждого свои,
+// поэтому одновременные изменения одной вещи упорядочивает только блокировка строки вещи в базе
+public class ItemRowLockTest {
+    private static final Path DB_DIR = Path.of("target", "item-row-lock");
+
+    static ConfigurableApplicationContext first;
+    static ConfigurableApplicationContext second;
+    int ownerId;
+    int bookerId;
+    int itemId;
+    int bookingId;
+
+    @BeforeAll
+    static void beforeAll() throws Exception {
+        FileSystemUtils.deleteRecursively(DB_DIR);
+        first = startContext();
+        second = startContext();
+    }
+
+    @AfterAll
+    static void afterAll() {
+        second.close();
+        first.close();
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        long suffix = System.nanoTime();
+        ownerId = first.getBean(UserService.class).createUser(new UserDto(null, "владелец",
+                "owner" + suffix + "@yandex.ru")).getId();
+        bookerId = first.getBean(UserService.class).createUser(new UserDto(null, "арендатор",
+                "booker" + suffix + "@yandex.ru")).getId();
+        itemId = first.getBean(ItemService.class).createItem(new ItemDto(null, "дрель", "ударная дрель", true, null),
+                ownerId).getId();
+        BookingDtoIn booking = new BookingDtoIn();
+        booking.setItemId(itemId);
+        booking.setStart(LocalDateTime.now().plusDays(1));
+        booking.setEnd(LocalDateTime.now().plusDays(2));
+        bookingId = first.getBean(BookingService.class).createBooking(booking, bookerId).getId();
+    }
+
+    @Test
+    void testConcurrentApprovalsOnTwoNodes() {
+        CompletableFuture<?> secondApproval = new TransactionTemplate(first.getBean(PlatformTransactionManager.class))
+                .execute(status -> {
+                    first.getBean(ItemLocks.class).lockRowsUntilCompletion(List.of(itemId));
+                    // Второй экземпляр ждёт строку вещи, пока первый подтверждает бронирование
+                    CompletableFuture<?> approval = CompletableFuture.runAsync(() ->
+                            second.getBean(BookingService.class).changeStatus(ownerId, bookingId, true));
+                    sleep(100);
+                    Assertions.assertFalse(approval.isDone());
+                    first.getBean(BookingService.class).changeStatus(ownerId, bookingId, true);
+                    return approval;
+                });
+
+        // После фиксации второй экземпляр видит уже подтверждённое бронирование
+        CompletionException e = Assertions.assertThrows(CompletionException.class, secondApproval::join);
+        Assertions.assertInstanceOf(ValidationException.class, e.getCause());
+        Assertions.assertEquals(Status.APPROVED.name(), first.getBean(JdbcTemplate.class)
+                .queryForObject("select status from bookings where id = ?", String.class, bookingId));
+    }
+
+    @Test
+    void testApprovalOnOtherNodeIsSeen() {
+        BookingDtoIn overlapping = new BookingDtoIn(null, LocalDateTime.now().plusDays(1).plusHours(1),
+                LocalDateTime.now().plusDays(3), itemId, null);
+        // Второй экземпляр уже загрузил интервалы вещи: подтверждённых бронирований пока нет
+        Assertions.assertFalse(second.getBean(BookingIntervalIndex.class).hasOverlap(itemId, overlapping.getStart(),
+                overlapping.getEnd()));
+        first.getBean(BookingService.class).changeStatus(ownerId, bookingId, true);
+
+        // Под блокировкой строки второй экземпляр перечитывает интервалы и видит подтверждение первого
+        Assertions.assertThrows(ValidationException.class,
+                () -> second.getBean(BookingService.class).createBooking(overlapping, bookerId));
+        // Пересекающееся ожидающее бронирование, появившееся в обход сервиса, подтвердить тоже нельзя
+        JdbcTemplate jdbcTemplate = first.getBean(JdbcTemplate.class);
+        jdbcTemplate.update("insert into bookings (id, start_date, end_date, item_id, booker_id, status) " +
+                        "values (nextval('bookings_seq'), ?, ?, ?, ?, 'WAITING')",
+                overlapping.getStart(), overlapping.getEnd(), itemId, bookerId);
+        int waitingId = jdbcTemplate.queryForObject("select max(id) from bookings where item_id = ?", Integer.class,
+                itemId);
+        Assertions.assertThrows(ValidationException.class,
+                () -> second.getBean(BookingService.class).changeStatus(ownerId, waitingId, true));
+        Assertions.assertEquals(Status.WAITING.name(), jdbcTemplate.queryForObject(
+                "select status from bookings where id = ?", String.class, waitingId));
+    }
+
+    @Test
+    void testLockWaitIsBounded() {
+        new TransactionTemplate(first.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> {
+            first.getBean(ItemLocks.class).lockRowsUntilCompletion(List.of(itemId));
+            // Все попытки второго экземпляра упираются в таймаут блокировки
+            CompletionException e = Assertions.assertThrows(CompletionException.class, () -> CompletableFuture
+                    .runAsync(() -> second.getBean(BookingService.class).changeStatus(ownerId, bookingId, true))
+                    .join());
+            Assertions.assertInstanceOf(PessimisticLockingFailureException.class, e.getCause());
+        });
+
+        second.getBean(BookingService.class).changeStatus(ownerId, bookingId, true);
+    }
+
+    private static ConfigurableApplicationContext startContext() {
+        return new SpringApplicationBuilder(ShareItApp.class)
+                .web(WebApplicationType.NONE)
+                .run("--logging.level.root=WARN",
+                        "--logging.level.org.springframework.transaction.interceptor=WARN",
+                        "--logging.level.org.springframework.orm.jpa.JpaTransactionManager=WARN",
+                        "--spring.datasource.url=jdbc:h2:file:./" + DB_DIR.resolve("shareit") + ";LOCK_TIMEOUT=300",
+                        "--shareit.item-locks.mode=database",
+                        "--shareit.retry.max-attempts=3",
+                        "--shareit.retry.delay=20ms");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package ru.practicum.shareit.booking;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.shareit.booking.dto.BookingCountDto;
+import ru.practicum.shareit.booking.dto.BookingDtoForOwnerItems;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.config.PrimaryReads;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+
+@ExtendWith(MockitoExtension.class)
+public class NextLastBookingCacheTest {
+    @Mock
+    BookingRepository bookingRepository;
+    NextLastBookingCache cache;
+    LocalDateTime date;
+
+    @BeforeEach
+    void beforeEach() {
+        cache = new NextLastBookingCache(bookingRepository, new PrimaryReads(null, null), true, Duration.ofMinutes(5), 500);
+        date = LocalDateTime.of(2030, 1, 1, 0, 0);
+    }
+
+    @Test
+    void testRollsForwardWithoutQueries() {
+        Mockito.when(bookingRepository.findLastAndUpcomingForItems(anyCollection(), Mockito.eq(Status.APPROVED), any()))
+                .thenReturn(List.of(booking(1, 1), booking(2, 3), booking(3, 5)));
+
+        Assertions.assertEquals(1, cache.getLast(1, date.plusDays(2)).getId());
+        Assertions.assertEquals(2, cache.getNext(1, date.plusDays(2)).getId());
+        // Время идёт: следующее бронирование становится последним
+        Assertions.assertEquals(2, cache.getLast(1, date.plusDays(4)).getId());
+        Assertions.assertEquals(3, cache.getNext(1, date.plusDays(4)).getId());
+        Assertions.assertEquals(3, cache.getLast(1, date.plusDays(6)).getId());
+        Assertions.assertNull(cache.getNext(1, date.plusDays(6)));
+
+        Mockito.verify(bookingRepository, Mockito.times(1))
+                .findLastAndUpcomingForItems(List.of(1), Status.APPROVED, date.plusDays(2));
+    }
+
+    @Test
+    void testAddOnCommit() {
+        Mockito.when(bookingRepository.findLastAndUpcomingForItems(anyCollection(), Mockito.eq(Status.APPROVED), any()))
+                .thenReturn(List.of(booking(1, 1), booking(2, 5)));
+
+        Mockito.when(bookingRepository.countAllForItems(anyCollection(), Mockito.eq(Status.APPROVED)))
+                .thenReturn(List.of(count(1, 2)), List.of(count(1, 3)));
+
+        Assertions.assertEquals(2, cache.getNext(1, date.plusDays(2)).getId());
+        // Без активной транзакции подтверждение сразу попадает в кэш, а число подтверждённых совпадает с базой
+        cache.addOnCommit(approved(3, 3));
+        Assertions.assertEquals(3, cache.getNext(1, date.plusDays(2)).getId());
+        Assertions.assertEquals(1, cache.getLast(1, date.plusDays(2)).getId());
+
+        Mockito.verify(bookingRepository, Mockito.times(1)).findLastAndUpcomingForItems(any(), any(), any());
+    }
+
+    @Test
+    void testFallsBackToDatabase() {
+        Mockito.when(bookingRepository.findLastAndUpcomingForItems(anyCollection(), Mockito.eq(Status.APPROVED), any()))
+                .thenReturn(List.of(booking(1, 1), booking(2, 3)));
+
+        Assertions.assertEquals(2, cache.getLast(1, date.plusDays(4)).getId());
+        // Момент раньше головы списка: последнее бронирование в кэше уже не хранится, читаем из базы
+        Assertions.assertEquals(1, cache.getLast(1, date.plusDays(2)).getId());
+        Mockito.verify(bookingRepository, Mockito.times(2)).findLastAndUpcomingForItems(any(), any(), any());
+
+        // Устаревшая запись тоже перечитывается из базы
+        cache = new NextLastBookingCache(bookingRepository, new PrimaryReads(null, null), true, Duration.ZERO, 500);
+        cache.getLast(1, date.plusDays(4));
+        cache.getLast(1, date.plusDays(4));
+        Mockito.verify(bookingRepository, Mockito.times(4)).findLastAndUpcomingForItems(any(), any(), any());
+    }
+
+    @Test
+    void testLoadRacingApprovalIsNotCached() {
+        // Подтверждение фиксируется, пока читается список, и в прочитанный список не попадает
+        Mockito.when(bookingRepository.findLastAndUpcomingForItems(anyCollection(), Mockito.eq(Status.APPROVED), any()))
+                .thenAnswer(invocation -> {
+                    cache.addOnCommit(approved(3, 3));
+                    return List.of(booking(1, 1), booking(2, 5));
+                });
+        Assertions.assertEquals(2, cache.getNext(1, date.plusDays(2)).getId());
+
+        Mockito.when(bookingRepository.findLastAndUpcomingForItems(anyCollection(), Mockito.eq(Status.APPROVED), any()))
+                .thenReturn(List.of(booking(1, 1), booking(3, 3), booking(2, 5)));
+        Assertions.assertEquals(3, cache.getNext(1, date.plusDays(2)).getId());
+        Mockito.verify(bookingRepository, Mockito.times(2)).findLastAndUpcomingForItems(any(), any(), any());
+    }
+
+    @Test
+    void testReloadsAfterApprovalOfAnotherInstance() {
+        Mockito.when(bookingRepository.findLastAndUpcomingForItems(anyCollection(), Mockito.eq(Status.APPROVED), any()))
+                .thenReturn(List.of(booking(1, 1), booking(2, 5)));
+        Mockito.when(bookingRepository.countAllForItems(anyCollection(), Mockito.eq(Status.APPROVED)))
+                .thenReturn(List.of(count(1, 2)));
+        Assertions.assertEquals(2, cache.getNext(1, date.plusDays(2)).getId());
+        Assertions.assertEquals(2, cache.getNext(1, date.plusDays(2)).getId());
+        Mockito.verify(bookingRepository, Mockito.times(1)).findLastAndUpcomingForItems(any(), any(), any());
+
+        // Другой экземпляр подтвердил бронирование: число в базе выросло, и запись перечитывается до истечения ttl
+        Mockito.when(bookingRepository.findLastAndUpcomingForItems(anyCollection(), Mockito.eq(Status.APPROVED), any()))
+                .thenReturn(List.of(booking(1, 1), booking(3, 3), booking(2, 5)));
+        Mockito.when(bookingRepository.countAllForItems(anyCollection(), Mockito.eq(Status.APPROVED)))
+                .thenReturn(List.of(count(1, 3)));
+        Assertions.assertEquals(3, cache.getNext(1, date.plusDays(2)).getId());
+        Assertions.assertEquals(3, cache.getNext(1, date.plusDays(2)).getId());
+        Mockito.verify(bookingRepository, Mockito.times(2)).findLastAndUpcomingForItems(any(), any(), any());
+    }
+
+    @Test
+    void testGetNextAndLast() {
+        Mockito.when(bookingRepository.findLastAndUpcomingForItems(anyCollection(), Mockito.eq(Status.APPROVED), any()))
+                .thenReturn(List.of(booking(1, 1), booking(2, 3), booking(3, 5)));
+        cache.getNextAndLast(List.of(1), date.plusDays(2));
+
+        Mockito.when(bookingRepository.findLastAndUpcomingForItems(anyCollection(), Mockito.eq(Status.APPROVED), any()))
+                .thenReturn(List.of(booking(4, 2, 2)));
+        List<BookingDtoForOwnerItems> bookings = cache.getNextAndLast(List.of(1, 2, 3), date.plusDays(4));
+
+        // Из базы загружаются только вещи, которых нет в кэше
+        Mockito.verify(bookingRepository).findLastAndUpcomingForItems(List.of(2, 3), Status.APPROVED, date.plusDays(4));
+        Assertions.assertEquals(List.of(2, 3, 4), bookings.stream().map(BookingDtoForOwnerItems::getId)
+                .collect(Collectors.toList()));
+    }
+
+    private BookingDtoForOwnerItems booking(int id, int startDay) {
+        return booking(id, startDay, 1);
+    }
+
+    private BookingDtoForOwnerItems booking(int id, int startDay, int itemId) {
+        return new NextLastBookingCache.BookingEntry(id, 10, itemId, date.plusDays(startDay));
+    }
+
+    private BookingCountDto count(int itemId, long bookings) {
+        return new BookingCountDto() {
+            @Override
+            public Integer getItemId() {
+                return itemId;
+            }
+
+            @Override
+            public Long getBookings() {
+                return bookings;
+            }
+        };
+    }
+
+    private Booking approved(int id, int startDay) {
+        Item item = new Item();
+        item.setId(1);
+        User booker = new User();
+        booker.setId(10);
+        Booking booking = new Booking();
+        booking.setId(id);
+        booking.setItem(item);
+        booking.setBooker(booker);
+        booking.setStart(date.plusDays(startDay));
+        booking.setStatus(Status.APPROVED);
+        return booking;
+    }
+}
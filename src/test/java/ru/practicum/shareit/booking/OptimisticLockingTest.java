@@ -0,0 +1,121 @@
+package ru.practicum.shareit.booking;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingDtoIn;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.exceptions.ValidationException;
+import ru.practicum.shareit.item.ItemRepository;
+import ru.practicum.shareit.item.ItemService;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.UserService;
+import ru.practicum.shareit.user.dto.UserDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// Без блокировок вещей одновременные изменения обнаруживаются по версии строки и повторяются
+@SpringBootTest(properties = {"db.name=test", "shareit.item-locks.mode=none"})
+@ActiveProfiles("test")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class OptimisticLockingTest {
+    private final UserService userService;
+    private final ItemService itemService;
+    private final BookingService bookingService;
+    private final ItemRepository itemRepository;
+    private final BookingRepository bookingRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final JdbcTemplate jdbcTemplate;
+    int ownerId;
+    int itemId;
+    int bookingId;
+
+    @BeforeEach
+    void beforeEach() {
+        long suffix = System.nanoTime();
+        ownerId = userService.createUser(new UserDto(null, "владелец", "owner" + suffix + "@yandex.ru")).getId();
+        int bookerId = userService.createUser(new UserDto(null, "арендатор", "booker" + suffix + "@yandex.ru")).getId();
+        itemId = itemService.createItem(new ItemDto(null, "дрель", "ударная дрель", true, null), ownerId).getId();
+        BookingDtoIn booking = new BookingDtoIn();
+        booking.setItemId(itemId);
+        booking.setStart(LocalDateTime.now().plusDays(1));
+        booking.setEnd(LocalDateTime.now().plusDays(2));
+        bookingId = bookingService.createBooking(booking, bookerId).getId();
+    }
+
+    @Test
+    void testStaleWriteIsRejected() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Assertions.assertThrows(ObjectOptimisticLockingFailureException.class, () ->
+                transactionTemplate.executeWithoutResult(status -> {
+                    Item item = itemRepository.findById(itemId).orElseThrow();
+                    // Пока эта транзакция держит прочитанную вещь, другой запрос успевает её изменить
+                    CompletableFuture.runAsync(() -> itemService.updateItem(itemId,
+                            new ItemDto(null, null, "новое описание", null, null), ownerId)).join();
+                    item.setName("новое название");
+                    itemRepository.saveAndFlush(item);
+                }));
+
+        Assertions.assertEquals(List.of("дрель", "новое описание"), jdbcTemplate.queryForObject(
+                "select name, description from items where id = ?",
+                (rs, rowNum) -> List.of(rs.getString(1), rs.getString(2)), itemId));
+    }
+
+    @Test
+    void testConcurrentItemUpdatesAreNotLost() {
+        List<CompletableFuture<ItemDto>> updates = List.of(
+                CompletableFuture.supplyAsync(() -> itemService.updateItem(itemId,
+                        new ItemDto(null, "перфоратор", null, null, null), ownerId)),
+                CompletableFuture.supplyAsync(() -> itemService.updateItem(itemId,
+                        new ItemDto(null, null, "с набором свёрл", null, null), ownerId)),
+                CompletableFuture.supplyAsync(() -> itemService.updateItem(itemId,
+                        new ItemDto(null, null, null, false, null), ownerId)));
+        updates.forEach(CompletableFuture::join);
+
+        Item item = itemRepository.findById(itemId).orElseThrow();
+        Assertions.assertEquals("перфоратор", item.getName());
+        Assertions.assertEquals("с набором свёрл", item.getDescription());
+        Assertions.assertFalse(item.getAvailable());
+        Assertions.assertEquals(3, jdbcTemplate.queryForObject("select version from items where id = ?",
+                Long.class, itemId));
+    }
+
+    @Test
+    void testConcurrentApprovalsApproveOnce() {
+        List<CompletableFuture<Boolean>> approvals = IntStream.range(0, 2)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> {
+                    bookingService.changeStatus(ownerId, bookingId, true);
+                    return true;
+                }))
+                .collect(Collectors.toList());
+
+        int approved = 0;
+        for (CompletableFuture<Boolean> approval : approvals) {
+            try {
+                approval.join();
+                approved++;
+            } catch (CompletionException e) {
+                Assertions.assertInstanceOf(ValidationException.class, e.getCause());
+            }
+        }
+        Assertions.assertEquals(1, approved);
+        Booking booking = bookingRepository.findById(bookingId).orElseThrow();
+        Assertions.assertEquals(Status.APPROVED, booking.getStatus());
+        Assertions.assertEquals(1, booking.getVersion());
+    }
+}
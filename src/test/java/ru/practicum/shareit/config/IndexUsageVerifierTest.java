@@ -0,0 +1,49 @@
+package ru.practicum.shareit.config;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+@SpringBootTest(
+        properties = "db.name=test",
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class IndexUsageVerifierTest {
+    private final IndexUsageVerifier indexUsageVerifier;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testHotQueriesUseIndexes() {
+        assertThat(indexUsageVerifier.findQueriesWithoutIndex(), empty());
+    }
+
+    @Test
+    void testMissingIndexStopsStrictStartup() {
+        // Для booker_id у H2 остаётся индекс внешнего ключа, но запрос должен использовать именно свой индекс
+        jdbcTemplate.execute("DROP INDEX idx_bookings_booker_end");
+        try {
+            assertThat(indexUsageVerifier.findQueriesWithoutIndex(), equalTo(List.of("idx_bookings_booker_end")));
+            IllegalStateException e = Assertions.assertThrows(IllegalStateException.class, indexUsageVerifier::verify);
+            assertThat(e.getMessage(), equalTo("Запросы не используют индексы: [idx_bookings_booker_end]"));
+        } finally {
+            jdbcTemplate.execute("CREATE INDEX idx_bookings_booker_end "
+                    + "ON bookings (booker_id, end_date DESC, id DESC, start_date, status, item_id)");
+        }
+    }
+
+    @Test
+    void testMigrationsApplied() {
+        List<String> versions = jdbcTemplate.queryForList(
+                "select \"version\" from \"flyway_schema_history\" where \"version\" is not null and \"success\" order by \"installed_rank\"", String.class);
+        assertThat(versions, equalTo(List.of("1", "2", "3", "4", "5", "6", "7")));
+    }
+}
@@ -0,0 +1,50 @@
+package ru.practicum.shareit.config;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "db.name=test")
+@ActiveProfiles({"test", "metrics"})
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class MetricsEndpointTest {
+    private final MockMvc mvc;
+
+    @Test
+    void testPrometheusEndpoint() throws Exception {
+        mvc.perform(get("/users"))
+                .andExpect(status().isOk());
+
+        mvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                // Гистограмма времени ответа контроллера
+                .andExpect(content().string(containsString(
+                        "http_server_requests_seconds_bucket{application=\"shareit\",exception=\"None\","
+                                + "method=\"GET\",outcome=\"SUCCESS\",status=\"200\",uri=\"/users\",le=")))
+                // Время выполнения методов репозиториев
+                .andExpect(content().string(containsString("spring_data_repository_invocations_seconds_bucket{")))
+                .andExpect(content().string(containsString("repository=\"UserRepository\"")))
+                // Заполненность пула соединений
+                .andExpect(content().string(containsString("hikaricp_connections_pending{")))
+                .andExpect(content().string(containsString("hikaricp_connections_active{")))
+                // Статистика Hibernate
+                .andExpect(content().string(containsString("hibernate_query_executions_total{")))
+                .andExpect(content().string(containsString("hibernate_entities_loads_total{")))
+                // Попадания и промахи кэша второго уровня и кэша запросов
+                .andExpect(content().string(containsString("hibernate_second_level_cache_requests_total{")))
+                .andExpect(content().string(containsString("region=\"users\"")))
+                .andExpect(content().string(containsString("hibernate_cache_query_requests_total{")));
+    }
+}
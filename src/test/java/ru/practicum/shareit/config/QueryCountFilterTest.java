@@ -0,0 +1,43 @@
+package ru.practicum.shareit.config;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "db.name=test")
+@AutoConfigureMockMvc
+@ActiveProfiles({"test", "diagnostics"})
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class QueryCountFilterTest {
+    private final MockMvc mvc;
+    private final EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void testQueryCountHeaders() throws Exception {
+        // Список пользователей мог остаться в кэше запросов от других тестов
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        mvc.perform(get("/users"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(QueryCountFilter.QUERY_COUNT_HEADER, "1"))
+                .andExpect(header().string(QueryCountFilter.SERVER_TIMING_HEADER, startsWith("db;dur=")))
+                // Тело ответа после буферизации не теряется
+                .andExpect(content().string(startsWith("[")));
+
+        mvc.perform(get("/users/{id}", -1))
+                .andExpect(status().isNotFound())
+                .andExpect(header().string(QueryCountFilter.QUERY_COUNT_HEADER, "1"));
+    }
+}
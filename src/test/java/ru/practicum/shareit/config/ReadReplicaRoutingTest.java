@@ -0,0 +1,121 @@
+package ru.practicum.shareit.config;
+
+import lombok.RequiredArgsConstructor;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.exceptions.ObjectNotFoundException;
+import ru.practicum.shareit.user.UserService;
+import ru.practicum.shareit.user.dto.UserDto;
+
+import javax.sql.DataSource;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Основная база и реплика — две независимые H2 в памяти, репликации между ними нет:
+// по тому, из какой базы прочитаны данные, видно, куда ушла транзакция. Кэш второго уровня выключен,
+// иначе пользователи и вещи читались бы из него, а не из базы
+@SpringBootTest(properties = {"db.name=test",
+        "shareit.datasource.replica.jdbc-url=jdbc:h2:mem:replica",
+        "shareit.datasource.replica.username=test",
+        "shareit.datasource.replica.password=test",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=false"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ReadReplicaRoutingTest {
+    private final MockMvc mvc;
+    private final UserService userService;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final PrimaryReads primaryReads;
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+    JdbcTemplate replicaJdbcTemplate;
+    int userId;
+
+    @BeforeEach
+    void beforeEach() {
+        Flyway.configure()
+                .dataSource(replicaDataSource)
+                .locations("classpath:db/migration", "classpath:db/vendor/h2")
+                .load()
+                .migrate();
+        replicaJdbcTemplate = new JdbcTemplate(replicaDataSource);
+        userId = userService.createUser(new UserDto(null, "основная", "primary@yandex.ru")).getId();
+    }
+
+    @AfterEach
+    void afterEach() {
+        jdbcTemplate.update("delete from items where owner_id = ?", userId);
+        jdbcTemplate.update("delete from users where id = ?", userId);
+        replicaJdbcTemplate.update("delete from users where id = ?", userId);
+    }
+
+    @Test
+    void testReadOnlyTransactionsUseReplica() {
+        // Пользователь создан в основной базе, а транзакция только для чтения идёт в реплику
+        Assertions.assertThrows(ObjectNotFoundException.class, () -> userService.getUserById(userId));
+
+        replicaJdbcTemplate.update("insert into users (id, name, email) values (?, ?, ?)", userId, "реплика",
+                "replica@yandex.ru");
+        Assertions.assertEquals("реплика", userService.getUserById(userId).getName());
+
+        // Внутри пишущей транзакции чтение остаётся в основной базе
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Assertions.assertEquals("основная",
+                transactionTemplate.execute(status -> userService.getUserById(userId).getName()));
+
+        ReadOnlyRoutingDataSource.setPrimaryOnly(true);
+        try {
+            Assertions.assertEquals("основная", userService.getUserById(userId).getName());
+        } finally {
+            ReadOnlyRoutingDataSource.setPrimaryOnly(false);
+        }
+    }
+
+    @Test
+    void testPrimaryReadsInReadOnlyTransaction() {
+        TransactionTemplate readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        // Загрузка снимка из транзакции только для чтения всё равно видит основную базу
+        Assertions.assertEquals("основная", readOnlyTransaction.execute(status ->
+                primaryReads.execute(() -> userService.getUserById(userId).getName())));
+    }
+
+    @Test
+    void testReadYourWrites() throws Exception {
+        String item = "{\"name\": \"дрель\", \"description\": \"ударная дрель\", \"available\": true}";
+        String itemId = mvc.perform(post("/items")
+                        .header(ReadYourWritesFilter.USER_HEADER, userId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(item))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString().replaceAll(".*\"id\":(\\d+).*", "$1");
+
+        // Автор только что созданной вещи читает из основной базы
+        mvc.perform(get("/items/{id}", itemId).header(ReadYourWritesFilter.USER_HEADER, userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("дрель"));
+        // Другие пользователи читают из реплики, куда вещь ещё не попала
+        mvc.perform(get("/items/{id}", itemId).header(ReadYourWritesFilter.USER_HEADER, userId + 1))
+                .andExpect(status().isNotFound());
+    }
+}
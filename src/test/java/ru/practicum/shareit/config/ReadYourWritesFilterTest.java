@@ -0,0 +1,32 @@
+package ru.practicum.shareit.config;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+
+public class ReadYourWritesFilterTest {
+
+    @Test
+    void testExpiredWritesAreEvicted() throws Exception {
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(Duration.ofMillis(20));
+        for (int userId = 1; userId <= 3; userId++) {
+            write(filter, userId);
+        }
+        Assertions.assertEquals(3, filter.trackedUsers());
+
+        Thread.sleep(50);
+        // Пользователи 1-3 больше ничего не читали, их записи удаляются при следующем изменении
+        write(filter, 4);
+        Assertions.assertEquals(1, filter.trackedUsers());
+    }
+
+    private static void write(ReadYourWritesFilter filter, int userId) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/items");
+        request.addHeader(ReadYourWritesFilter.USER_HEADER, userId);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+    }
+}
@@ -0,0 +1,79 @@
+package ru.practicum.shareit.generator;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.user.UserService;
+import ru.practicum.shareit.user.dto.UserDto;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.notNullValue;
+
+@Transactional
+@SpringBootTest(
+        properties = "db.name=test",
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class DataGeneratorTest {
+    private final JdbcTemplate jdbcTemplate;
+    private final UserService userService;
+    GeneratorProperties properties;
+
+    @BeforeEach
+    void beforeEach() {
+        properties = new GeneratorProperties();
+        properties.setUsers(100);
+        properties.setItems(1000);
+        properties.setBookings(5000);
+        properties.setRequests(50);
+        properties.setBatchSize(300);
+    }
+
+    @Test
+    void testGenerate() {
+        long usersBefore = count("select count(*) from users");
+        long itemsBefore = count("select count(*) from items");
+        long bookingsBefore = count("select count(*) from bookings");
+        long requestsBefore = count("select count(*) from requests");
+
+        new DataGenerator(jdbcTemplate, properties).generate();
+
+        assertThat(count("select count(*) from users") - usersBefore, equalTo(100L));
+        assertThat(count("select count(*) from items") - itemsBefore, equalTo(1000L));
+        assertThat(count("select count(*) from bookings") - bookingsBefore, equalTo(5000L));
+        assertThat(count("select count(*) from requests") - requestsBefore, equalTo(50L));
+        assertThat(count("select count(*) from comments"), greaterThan(0L));
+
+        // Бронирования есть в прошлом, настоящем и будущем, и никто не бронирует свою вещь
+        assertThat(count("select count(*) from bookings where end_date < current_timestamp"), greaterThan(0L));
+        assertThat(count("select count(*) from bookings where start_date < current_timestamp "
+                + "and end_date > current_timestamp"), greaterThan(0L));
+        assertThat(count("select count(*) from bookings where start_date > current_timestamp"), greaterThan(0L));
+        assertThat(count("select count(*) from bookings b join items i on b.item_id = i.id "
+                + "where b.booker_id = i.owner_id"), equalTo(0L));
+        // Подтверждённые бронирования одной вещи не пересекаются
+        assertThat(count("select count(*) from bookings a join bookings b on a.item_id = b.item_id and a.id < b.id "
+                + "join items i on a.item_id = i.id join users u on i.owner_id = u.id "
+                + "where u.email like '%@generated.shareit' and a.status = 'APPROVED' and b.status = 'APPROVED' "
+                + "and a.start_date < b.end_date and b.start_date < a.end_date"), equalTo(0L));
+
+        // По Ципфу у самого крупного владельца вещей во много раз больше среднего
+        assertThat(count("select max(c) from (select count(*) c from items group by owner_id)"), greaterThan(100L));
+
+        // После генерации Hibernate получает из последовательности свободные id
+        UserDto user = new UserDto();
+        user.setName("тестовый пользователь");
+        user.setEmail("test@yandex.ru");
+        assertThat(userService.createUser(user).getId(), notNullValue());
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+}
@@ -32,7 +32,7 @@ public class ItemDtoJsonTest {
         user.setName("тестовый пользователь");
         user.setEmail("test@yandex.ru");
 
-        Item item = new Item(1, "вещь", "описание", true, user, null);
+        Item item = new Item(1, "вещь", "описание", true, user, null, null);
         ItemDto itemDto = itemMapper.toItemDto(item);
 
         JsonContent<ItemDto> result = json.write(itemDto);
@@ -52,7 +52,7 @@ public class ItemDtoJsonTest {
         user.setName("тестовый пользователь");
         user.setEmail("test@yandex.ru");
 
-        Item item = new Item(1, "вещь", "описание", true, user, null);
+        Item item = new Item(1, "вещь", "описание", true, user, null, null);
 
         CommentDto commentDto = new CommentDto(1, "test", item.getId(), user.getName(), LocalDateTime.now());
         BookingDtoForItem bookingDtoForItem1 = new BookingDtoForItem() {
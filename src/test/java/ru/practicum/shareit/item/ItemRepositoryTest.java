@@ -67,25 +67,6 @@ public class ItemRepositoryTest {
         itemRepository.save(item3);
     }
 
-    @Test
-    void testSearchItem() {
-        List<Item> items = itemRepository.search("робот");
-
-        Assertions.assertEquals(2, items.size());
-        Assertions.assertTrue(items.contains(item));
-        Assertions.assertTrue(items.contains(item2));
-    }
-
-    @Test
-    void testPageSearchItem() {
-        Pageable pageable = PageRequest.of(0, 1);
-        List<Item> items = itemRepository.search("робот", pageable).toList();
-
-        Assertions.assertEquals(1, items.size());
-        Assertions.assertTrue(items.contains(item));
-        Assertions.assertFalse(items.contains(item2));
-    }
-
     @Test
     void testFindAllByOwnerId() {
         List<Item> items = itemRepository.findAllByOwnerId(user.getId());
@@ -0,0 +1,141 @@
+package ru.practicum.shareit.item;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.user.UserService;
+import ru.practicum.shareit.user.dto.UserDto;
+
+import javax.persistence.EntityManagerFactory;
+
+import java.util.Collection;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static ru.practicum.shareit.QueryCountAssertions.assertQueryCount;
+import static ru.practicum.shareit.QueryCountAssertions.resetQueryCount;
+
+// Индекс видит только зафиксированные изменения, поэтому тесты работают без общей транзакции
+@SpringBootTest(
+        properties = "db.name=test",
+        webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class ItemSearchIndexTest {
+    private final ItemService itemService;
+    private final ItemSearchIndex itemSearchIndex;
+    private final UserService userService;
+    private final EntityManagerFactory entityManagerFactory;
+    private final PlatformTransactionManager transactionManager;
+    private final JdbcTemplate jdbcTemplate;
+    String suffix;
+    int ownerId;
+    ItemDto item;
+    ItemDto item2;
+
+    @BeforeEach
+    void beforeEach() {
+        suffix = String.valueOf(System.nanoTime());
+        ownerId = userService.createUser(new UserDto(null, "владелец", "owner" + suffix + "@yandex.ru")).getId();
+        item = new ItemDto(null, "стол" + suffix, "описание" + suffix, true, null);
+        item2 = new ItemDto(null, "утюг парогенератор" + suffix, "описание" + suffix + "2", true, null);
+    }
+
+    @Test
+    void testSearchItems() {
+        itemService.createItem(item, ownerId);
+        ItemDto itemDto2 = itemService.createItem(item2, ownerId);
+
+        Collection<ItemDto> items = itemService.searchItems("утюг парогенератор" + suffix, null, null).getContent();
+        Object[] itemDto = items.toArray();
+        assertThat(items.size(), equalTo(1));
+        Assertions.assertEquals(((ItemDto) itemDto[0]).getId(), itemDto2.getId());
+        Assertions.assertEquals(((ItemDto) itemDto[0]).getName(), itemDto2.getName());
+        Assertions.assertEquals(((ItemDto) itemDto[0]).getDescription(), itemDto2.getDescription());
+
+        items = itemService.searchItems("описание" + suffix, 0, 2).getContent();
+        assertThat(items.size(), equalTo(2));
+    }
+
+    @Test
+    void testSearchItemsFollowsUpdates() {
+        itemService.createItem(item, ownerId);
+        ItemDto itemDto2 = itemService.createItem(item2, ownerId);
+
+        // Поиск без учёта регистра
+        assertThat(itemService.searchItems("УтЮг ПаРоГеНеРаТоР" + suffix, null, null).getContent().size(),
+                equalTo(1));
+
+        itemService.updateItem(itemDto2.getId(), new ItemDto(null, "паровой пылесос" + suffix, null, null, null),
+                ownerId);
+        assertThat(itemService.searchItems("утюг парогенератор" + suffix, null, null).getContent().size(),
+                equalTo(0));
+        assertThat(itemService.searchItems("пылесос" + suffix, null, null).getContent().size(), equalTo(1));
+
+        itemService.updateItem(itemDto2.getId(), new ItemDto(null, null, null, false, null), ownerId);
+        assertThat(itemService.searchItems("пылесос" + suffix, null, null).getContent().size(), equalTo(0));
+
+        // Поиск отвечает из индекса, не обращаясь к базе
+        resetQueryCount();
+        Slice<ItemDto> items = itemService.searchItems("описание" + suffix, 0, 1);
+        assertThat(items.getContent().size(), equalTo(1));
+        assertThat(items.hasNext(), equalTo(false));
+        assertQueryCount(0);
+    }
+
+    @Test
+    void testRolledBackUpdateIsNotSearchable() {
+        ItemDto itemDto = itemService.createItem(item, ownerId);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            itemService.updateItem(itemDto.getId(), new ItemDto(null, "кресло" + suffix, null, null, null), ownerId);
+            // До фиксации индекс не меняется
+            assertThat(itemService.searchItems("кресло" + suffix, null, null).getContent().size(), equalTo(0));
+            status.setRollbackOnly();
+        });
+
+        assertThat(itemService.searchItems("кресло" + suffix, null, null).getContent().size(), equalTo(0));
+        assertThat(itemService.searchItems("стол" + suffix, null, null).getContent().size(), equalTo(1));
+    }
+
+    @Test
+    void testRefreshPicksUpChangesOfOtherInstances() {
+        ItemDto itemDto = itemService.createItem(item, ownerId);
+        ItemDto itemDto2 = itemService.createItem(item2, ownerId);
+        // Первое обновление перечитывает вещи, которые этот экземпляр изменил сам
+        itemSearchIndex.refresh();
+
+        // Другой экземпляр меняет вещь и увеличивает её версию, а вторую вещь удаляет
+        jdbcTemplate.update("update items set name = ?, version = version + 1 where id = ?", "шкаф" + suffix,
+                itemDto.getId());
+        jdbcTemplate.update("delete from items where id = ?", itemDto2.getId());
+        assertThat(itemService.searchItems("шкаф" + suffix, null, null).getContent().size(), equalTo(0));
+
+        itemSearchIndex.refresh();
+        assertThat(itemService.searchItems("шкаф" + suffix, null, null).getContent().size(), equalTo(1));
+        assertThat(itemService.searchItems("стол" + suffix, null, null).getContent().size(), equalTo(0));
+        assertThat(itemService.searchItems("утюг парогенератор" + suffix, null, null).getContent().size(),
+                equalTo(0));
+    }
+
+    @Test
+    void testSearchItemWithoutDescription() {
+        ItemDto itemDto = itemService.createItem(item, ownerId);
+        // Описание в базе необязательно, хотя через API вещь без него не создать
+        jdbcTemplate.update("update items set description = null where id = ?", itemDto.getId());
+        entityManagerFactory.getCache().evict(Item.class, itemDto.getId());
+
+        itemService.updateItem(itemDto.getId(), new ItemDto(null, "лампа" + suffix, null, null, null), ownerId);
+        Collection<ItemDto> items = itemService.searchItems("лампа" + suffix, null, null).getContent();
+        assertThat(items.size(), equalTo(1));
+        Assertions.assertNull(items.iterator().next().getDescription());
+    }
+}
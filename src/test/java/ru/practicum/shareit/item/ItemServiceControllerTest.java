@@ -6,9 +6,12 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.practicum.shareit.item.dto.AvailabilityWindowDto;
 import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemDtoWithDates;
 import ru.practicum.shareit.item.model.Comment;
@@ -26,6 +29,7 @@ import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -134,7 +138,7 @@ public class ItemServiceControllerTest {
 
     @Test
     void testGetAllItems() throws Exception {
-        when(itemService.getAllItems(anyInt(), any(), any())).thenReturn(List.of(itemDtoWithDates, itemDtoWithDates2));
+        when(itemService.getAllItems(anyInt(), any(), any())).thenReturn(new SliceImpl<>(List.of(itemDtoWithDates, itemDtoWithDates2)));
 
         mvc.perform(get("/items")
                         .header("X-Sharer-User-Id", "1")
@@ -154,7 +158,7 @@ public class ItemServiceControllerTest {
 
     @Test
     void testSearchItems() throws Exception {
-        when(itemService.searchItems(anyString(), any(), any())).thenReturn(List.of(itemDto));
+        when(itemService.searchItems(anyString(), any(), any())).thenReturn(new SliceImpl<>(List.of(itemDto)));
 
         mvc.perform(get("/items/search?text=стол")
                         .header("X-Sharer-User-Id", "1")
@@ -162,6 +166,7 @@ public class ItemServiceControllerTest {
                         .contentType(MediaType.APPLICATION_JSON)
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
+                .andExpect(header().string("X-Has-More", "false"))
                 .andExpect(jsonPath("$.*", hasSize(1)))
                 .andExpect(jsonPath("$[0].id", is(itemDto.getId())))
                 .andExpect(jsonPath("$[0].name", is(itemDto.getName())))
@@ -170,6 +175,37 @@ public class ItemServiceControllerTest {
 
     }
 
+    @Test
+    void testGetAvailability() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2030, 1, 1, 10, 10, 10);
+        LocalDateTime to = LocalDateTime.of(2030, 1, 10, 10, 10, 10);
+        ItemAvailabilityDto availability = new ItemAvailabilityDto(1,
+                List.of(new AvailabilityWindowDto(from.plusDays(2), from.plusDays(3))),
+                List.of(new AvailabilityWindowDto(from, from.plusDays(2)), new AvailabilityWindowDto(from.plusDays(3), to)));
+        when(itemService.getAvailability(anyInt(), any(), any(), anyBoolean())).thenReturn(availability);
+
+        mvc.perform(get("/items/1/availability?from=2030-01-01T10:10:10&to=2030-01-10T10:10:10")
+                        .header("X-Sharer-User-Id", "1")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.itemId", is(1)))
+                .andExpect(jsonPath("$.busy", hasSize(1)))
+                .andExpect(jsonPath("$.busy[0].start", is(from.plusDays(2).toString())))
+                .andExpect(jsonPath("$.free", hasSize(2)))
+                .andExpect(jsonPath("$.free[1].end", is(to.toString())));
+
+        when(itemService.getAvailability(anyList(), any(), any(), anyBoolean())).thenReturn(List.of(availability));
+
+        mvc.perform(get("/items/availability?ids=1,2&from=2030-01-01T10:10:10&to=2030-01-10T10:10:10&includeWaiting=true")
+                        .header("X-Sharer-User-Id", "1")
+                        .characterEncoding(StandardCharsets.UTF_8)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.*", hasSize(1)))
+                .andExpect(jsonPath("$[0].itemId", is(1)));
+    }
+
     @Test
     void testCreateComment() throws Exception {
         CommentMapper commentMapper = new CommentMapperImpl();
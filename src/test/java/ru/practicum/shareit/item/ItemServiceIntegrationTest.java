@@ -6,9 +6,18 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Slice;
 import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.BookingService;
+import ru.practicum.shareit.booking.dto.BookingDtoIn;
+import ru.practicum.shareit.booking.dto.BookingDtoOut;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.item.dto.AvailabilityWindowDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemDtoWithDates;
+import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.request.ItemRequestMapper;
 import ru.practicum.shareit.request.ItemRequestMapperImpl;
@@ -17,16 +26,21 @@ import ru.practicum.shareit.request.dto.ItemRequestDtoIn;
 import ru.practicum.shareit.request.dto.ItemRequestDtoOut;
 import ru.practicum.shareit.user.UserService;
 import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.model.User;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static ru.practicum.shareit.QueryCountAssertions.assertQueryCount;
+import static ru.practicum.shareit.QueryCountAssertions.queryCount;
+import static ru.practicum.shareit.QueryCountAssertions.resetQueryCount;
 
 @Transactional
 @SpringBootTest(
@@ -39,6 +53,7 @@ public class ItemServiceIntegrationTest {
     private final UserService userService;
     private final ItemMapper itemMapper;
     private final ItemRequestService itemRequestService;
+    private final BookingService bookingService;
     UserDto user;
     UserDto user2;
     Item item;
@@ -97,7 +112,12 @@ public class ItemServiceIntegrationTest {
     @Test
     void testGetItem() {
         itemDto = itemService.createItem(itemMapper.toItemDto(item), user.getId());
+        em.flush();
+        em.clear();
+        resetQueryCount();
         ItemDtoWithDates itemDto2 = itemService.getItem(itemDto.getId(), user.getId());
+        // Вещь, бронирования и отзывы
+        assertQueryCount(4);
 
         assertThat(itemDto.getId(), equalTo(itemDto2.getId()));
         assertThat(itemDto.getName(), equalTo(itemDto2.getName()));
@@ -121,7 +141,7 @@ public class ItemServiceIntegrationTest {
         itemDto = itemService.createItem(itemMapper.toItemDto(item), user.getId());
         ItemDto itemDto2 = itemService.createItem(itemMapper.toItemDto(item2), user.getId());
 
-        Collection<ItemDtoWithDates> items = itemService.getAllItems(user.getId(), null, null);
+        Collection<ItemDtoWithDates> items = itemService.getAllItems(user.getId(), null, null).getContent();
         Object[] itemDtoWithDates = items.toArray();
         assertThat(items.size(), equalTo(2));
         Assertions.assertEquals(((ItemDtoWithDates) itemDtoWithDates[0]).getId(), itemDto.getId());
@@ -131,24 +151,60 @@ public class ItemServiceIntegrationTest {
         Assertions.assertEquals(((ItemDtoWithDates) itemDtoWithDates[1]).getName(), itemDto2.getName());
         Assertions.assertEquals(((ItemDtoWithDates) itemDtoWithDates[1]).getDescription(), itemDto2.getDescription());
 
-        items = itemService.getAllItems(user.getId(), 0, 1);
-        assertThat(items.size(), equalTo(1));
+        Slice<ItemDtoWithDates> page = itemService.getAllItems(user.getId(), 0, 1);
+        assertThat(page.getContent().size(), equalTo(1));
+        Assertions.assertTrue(page.hasNext());
+        Assertions.assertFalse(itemService.getAllItems(user.getId(), 1, 1).hasNext());
     }
 
     @Test
-    void testSearchItems() {
-        itemDto = itemService.createItem(itemMapper.toItemDto(item), user.getId());
-        ItemDto itemDto2 = itemService.createItem(itemMapper.toItemDto(item2), user.getId());
+    void testGetAllItemsStatementCount() {
+        User owner = em.find(User.class, user.getId());
+        User booker = em.find(User.class, user2.getId());
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        for (int i = 0; i < 6; i++) {
+            Item ownerItem = new Item();
+            ownerItem.setName("вещь " + i);
+            ownerItem.setDescription("описание");
+            ownerItem.setAvailable(true);
+            ownerItem.setOwner(owner);
+            em.persist(ownerItem);
+            em.persist(booking(ownerItem, booker, now.minusDays(3), now.minusDays(2)));
+            em.persist(booking(ownerItem, booker, now.minusDays(2), now.minusDays(1)));
+            em.persist(booking(ownerItem, booker, now.plusDays(1), now.plusDays(2)));
+            em.persist(booking(ownerItem, booker, now.plusDays(2), now.plusDays(3)));
+            em.persist(new Comment(null, "отзыв " + i, ownerItem, booker, now.minusDays(1)));
+        }
+        em.flush();
+        em.clear();
 
-        Collection<ItemDto> items = itemService.searchItems("утюг", null, null);
-        Object[] itemDto = items.toArray();
-        assertThat(items.size(), equalTo(1));
-        Assertions.assertEquals(((ItemDto) itemDto[0]).getId(), itemDto2.getId());
-        Assertions.assertEquals(((ItemDto) itemDto[0]).getName(), itemDto2.getName());
-        Assertions.assertEquals(((ItemDto) itemDto[0]).getDescription(), itemDto2.getDescription());
+        // Количество запросов не зависит от размера страницы
+        List<Long> statementCounts = new ArrayList<>();
+        for (int size : List.of(1, 3, 6)) {
+            em.clear();
+            resetQueryCount();
+            Collection<ItemDtoWithDates> items = itemService.getAllItems(user.getId(), 0, size).getContent();
+            assertThat(items.size(), equalTo(size));
+            statementCounts.add(queryCount());
+            assertQueryCount(3);
+        }
+        assertThat(statementCounts.get(1), equalTo(statementCounts.get(0)));
+        assertThat(statementCounts.get(2), equalTo(statementCounts.get(0)));
+        // Вещи, бронирования и отзывы - без отдельного запроса count
+        assertThat(statementCounts.get(0), equalTo(3L));
 
-        items = itemService.searchItems("описание", 0, 2);
-        assertThat(items.size(), equalTo(2));
+        em.clear();
+        resetQueryCount();
+        List<ItemDtoWithDates> items = new ArrayList<>(itemService.getAllItems(user.getId(), null, null).getContent());
+        assertQueryCount(3);
+        assertThat(items.size(), equalTo(6));
+        for (ItemDtoWithDates itemDtoWithDates : items) {
+            assertThat(itemDtoWithDates.getComments().size(), equalTo(1));
+            assertThat(itemDtoWithDates.getLastBooking().getBookerId(), equalTo(user2.getId()));
+            assertThat(itemDtoWithDates.getNextBooking().getBookerId(), equalTo(user2.getId()));
+            Assertions.assertTrue(itemDtoWithDates.getLastBooking().getId() + 1
+                    == itemDtoWithDates.getNextBooking().getId());
+        }
     }
 
     @Test
@@ -169,5 +225,39 @@ public class ItemServiceIntegrationTest {
 
     }
 
+    @Test
+    void testGetAvailability() {
+        itemDto = itemService.createItem(itemMapper.toItemDto(item), user.getId());
+        ItemDto itemDto2 = itemService.createItem(itemMapper.toItemDto(item2), user.getId());
+        LocalDateTime from = LocalDateTime.now().plusDays(1).withNano(0);
+        LocalDateTime to = from.plusDays(10);
+
+        BookingDtoOut approved = bookingService.createBooking(
+                new BookingDtoIn(null, from.plusDays(1), from.plusDays(3), itemDto.getId(), null), user2.getId());
+        bookingService.changeStatus(user.getId(), approved.getId(), true);
+        bookingService.createBooking(new BookingDtoIn(null, from.plusDays(3), from.plusDays(5), itemDto.getId(), null),
+                user2.getId());
+
+        List<ItemAvailabilityDto> availability = itemService.getAvailability(List.of(itemDto.getId(), itemDto2.getId()),
+                from, to, false);
+        assertThat(availability.size(), equalTo(2));
+        assertThat(availability.get(0).getBusy(), equalTo(List.of(new AvailabilityWindowDto(from.plusDays(1), from.plusDays(3)))));
+        assertThat(availability.get(0).getFree(), equalTo(List.of(new AvailabilityWindowDto(from, from.plusDays(1)),
+                new AvailabilityWindowDto(from.plusDays(3), to))));
+        assertThat(availability.get(1).getFree(), equalTo(List.of(new AvailabilityWindowDto(from, to))));
 
+        // С учётом ожидающих подтверждения бронирований смежные окна сливаются
+        ItemAvailabilityDto withWaiting = itemService.getAvailability(itemDto.getId(), from, to, true);
+        assertThat(withWaiting.getBusy(), equalTo(List.of(new AvailabilityWindowDto(from.plusDays(1), from.plusDays(5)))));
+    }
+
+    private Booking booking(Item item, User booker, LocalDateTime start, LocalDateTime end) {
+        Booking booking = new Booking();
+        booking.setItem(item);
+        booking.setBooker(booker);
+        booking.setStart(start);
+        booking.setEnd(end);
+        booking.setStatus(Status.APPROVED);
+        return booking;
+    }
 }
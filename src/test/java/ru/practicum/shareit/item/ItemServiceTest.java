@@ -10,9 +10,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import ru.practicum.shareit.booking.BookingService;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.Status;
+import ru.practicum.shareit.config.TransactionRetry;
 import ru.practicum.shareit.exceptions.ObjectNotFoundException;
 import ru.practicum.shareit.exceptions.ValidationException;
+import ru.practicum.shareit.item.dto.AvailabilityWindowDto;
 import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.dto.ItemAvailabilityDto;
 import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.item.dto.ItemDtoWithDates;
 import ru.practicum.shareit.item.model.Comment;
@@ -28,10 +31,16 @@ import ru.practicum.shareit.user.dto.UserDto;
 import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 
 @ExtendWith(MockitoExtension.class)
 public class ItemServiceTest {
@@ -45,6 +54,10 @@ public class ItemServiceTest {
     @Mock
     CommentRepository commentRepository;
     @Mock
+    ItemSearchIndex itemSearchIndex;
+    @Mock
+    TransactionRetry transactionRetry;
+    @Mock
     ItemRequestService itemRequestService;
     ItemRequestMapper itemRequestMapper;
     CommentMapper commentMapper;
@@ -61,7 +74,10 @@ public class ItemServiceTest {
         commentMapper = new CommentMapperImpl();
         userMapper = new UserMapperImpl();
         itemRequestMapper = new ItemRequestMapperImpl();
-        itemService = new ItemServiceImpl(itemRepository, userService, itemMapper, bookingService, commentRepository, commentMapper);
+        Mockito.lenient().when(transactionRetry.execute(any()))
+                .thenAnswer(invocationOnMock -> invocationOnMock.getArgument(0, Supplier.class).get());
+        itemService = new ItemServiceImpl(itemRepository, userService, itemMapper, bookingService, commentRepository, commentMapper,
+                itemSearchIndex, transactionRetry, 500, 1000);
 
         user = new UserDto();
         user.setId(1);
@@ -142,8 +158,7 @@ public class ItemServiceTest {
         });
 
         Comment comment = new Comment(1, "comment", item, userMapper.toUser(user2), LocalDateTime.now());
-        Mockito.when(bookingService.getNextBooking(anyInt(), any(), any())).thenReturn(null);
-        Mockito.when(bookingService.getLastBooking(anyInt(), any(), any())).thenReturn(null);
+        Mockito.when(bookingService.getNextAndLastBookings(anyList(), any(), any())).thenReturn(List.of());
         Mockito.when(commentRepository.findAllByItemId(anyInt())).thenReturn(List.of(comment));
 
         ItemDtoWithDates itemDtoWithDates = itemService.getItem(item.getId(), user.getId());
@@ -195,13 +210,16 @@ public class ItemServiceTest {
         });
 
         Comment comment = new Comment(1, "comment", item, userMapper.toUser(user2), LocalDateTime.now());
-        Mockito.when(bookingService.getNextBooking(anyInt(), any(), any())).thenReturn(null);
-        Mockito.when(bookingService.getLastBooking(anyInt(), any(), any())).thenReturn(null);
-        Mockito.when(commentRepository.findAllByItemId(anyInt())).thenReturn(List.of(comment));
-        Collection<ItemDtoWithDates> itemDtoWithDates = itemService.getAllItems(user.getId(), null, null);
+        Mockito.when(bookingService.getNextAndLastBookings(anyList(), any(), any())).thenReturn(List.of());
+        Mockito.when(commentRepository.findAllByItemIdIn(anyList())).thenReturn(List.of(comment));
+        Collection<ItemDtoWithDates> itemDtoWithDates = itemService.getAllItems(user.getId(), null, null).getContent();
 
         Mockito.verify(itemRepository, Mockito.times(1)).findAllByOwnerId(user.getId());
-        Mockito.verify(commentRepository, Mockito.times(1)).findAllByItemId(item.getId());
+        // Отзывы и бронирования запрашиваются один раз для всех вещей
+        Mockito.verify(commentRepository, Mockito.times(1)).findAllByItemIdIn(List.of(item.getId()));
+        Mockito.verify(bookingService, Mockito.times(1))
+                .getNextAndLastBookings(Mockito.eq(List.of(item.getId())), any(), Mockito.eq(Status.APPROVED));
+        Mockito.verify(commentRepository, Mockito.never()).findAllByItemId(anyInt());
 
         Object[] items = itemDtoWithDates.toArray();
         Assertions.assertEquals(1, items.length);
@@ -213,17 +231,39 @@ public class ItemServiceTest {
         Assertions.assertEquals(commentMapper.toCommentDto(comment), ((ItemDtoWithDates) items[0]).getComments().get(0));
 
         //Пользователь, не создавший ни одной вещи
-        itemDtoWithDates = itemService.getAllItems(user2.getId(), null, null);
+        itemDtoWithDates = itemService.getAllItems(user2.getId(), null, null).getContent();
         Assertions.assertEquals(0, itemDtoWithDates.size());
 
 
     }
 
+    @Test
+    void testGetAllItemsLoadsCommentsInBatches() {
+        itemService = new ItemServiceImpl(itemRepository, userService, itemMapper, bookingService, commentRepository,
+                commentMapper, itemSearchIndex, transactionRetry, 2, 1000);
+        List<Item> items = IntStream.rangeClosed(1, 3)
+                .mapToObj(id -> itemMapper.toItem(new ItemDto(id, "вещь" + id, "описание", true, null), user))
+                .collect(Collectors.toList());
+        Mockito.when(itemRepository.findAllByOwnerId(user.getId())).thenReturn(items);
+        Mockito.when(bookingService.getNextAndLastBookings(anyList(), any(), any())).thenReturn(List.of());
+        Comment comment = new Comment(1, "comment", items.get(2), userMapper.toUser(user2), LocalDateTime.now());
+        Mockito.when(commentRepository.findAllByItemIdIn(anyList())).thenReturn(List.of(), List.of(comment));
+
+        List<ItemDtoWithDates> itemDtos = itemService.getAllItems(user.getId(), null, null).getContent();
+
+        // Размер списка IN ограничен, отзывы загружаются частями
+        Mockito.verify(commentRepository).findAllByItemIdIn(List.of(1, 2));
+        Mockito.verify(commentRepository).findAllByItemIdIn(List.of(3));
+        Assertions.assertTrue(itemDtos.get(0).getComments().isEmpty());
+        Assertions.assertEquals(commentMapper.toCommentDto(comment), itemDtos.get(2).getComments().get(0));
+    }
+
     @Test
     void testSearchItems() {
-        Mockito.when(itemRepository.search(any())).thenReturn(List.of(item));
-        Collection<ItemDto> itemDtos = itemService.searchItems("test", null, null);
-        Mockito.verify(itemRepository, Mockito.times(1)).search("test");
+        Mockito.when(itemSearchIndex.search(any())).thenReturn(List.of(itemMapper.toItemDto(item)));
+        Collection<ItemDto> itemDtos = itemService.searchItems("test", null, null).getContent();
+        Mockito.verify(itemSearchIndex, Mockito.times(1)).search("test");
+        Mockito.verifyNoInteractions(itemRepository);
 
         Assertions.assertEquals(itemMapper.toItemDto(item), itemDtos.toArray()[0]);
 
@@ -268,4 +308,57 @@ public class ItemServiceTest {
         Assertions.assertThrows(ValidationException.class, () -> itemService.createComment(comment, item.getId(), user2.getId()));
 
     }
+
+    @Test
+    void testGetAvailability() {
+        LocalDateTime from = LocalDateTime.of(2030, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2030, 1, 10, 0, 0);
+        Mockito.when(itemRepository.countByIdIn(any())).thenReturn(1L);
+        Mockito.when(bookingService.getBusyWindows(anyList(), any(), any(), anyBoolean())).thenReturn(Map.of(
+                item.getId(), List.of(new AvailabilityWindowDto(from, from.plusDays(2)),
+                        new AvailabilityWindowDto(from.plusDays(4), from.plusDays(5)))));
+
+        ItemAvailabilityDto availability = itemService.getAvailability(item.getId(), from, to, false);
+        Mockito.verify(bookingService, Mockito.times(1)).getBusyWindows(List.of(item.getId()), from, to, false);
+
+        Assertions.assertEquals(item.getId(), availability.getItemId());
+        Assertions.assertEquals(2, availability.getBusy().size());
+        Assertions.assertEquals(List.of(new AvailabilityWindowDto(from.plusDays(2), from.plusDays(4)),
+                new AvailabilityWindowDto(from.plusDays(5), to)), availability.getFree());
+
+        // Вещь без бронирований свободна весь период
+        Mockito.when(itemRepository.countByIdIn(any())).thenReturn(2L);
+        List<ItemAvailabilityDto> availabilities = itemService.getAvailability(List.of(item.getId(), 2, 2), from, to, true);
+        Assertions.assertEquals(2, availabilities.size());
+        Assertions.assertEquals(List.of(new AvailabilityWindowDto(from, to)), availabilities.get(1).getFree());
+
+        // Пробуем получить занятость несуществующей вещи
+        Mockito.when(itemRepository.countByIdIn(any())).thenReturn(0L);
+        Assertions.assertThrows(ObjectNotFoundException.class, () -> itemService.getAvailability(1000, from, to, false));
+
+        // Пробуем получить занятость за некорректный период
+        Assertions.assertThrows(ValidationException.class, () -> itemService.getAvailability(item.getId(), to, from, false));
+        Assertions.assertThrows(ValidationException.class, () -> itemService.getAvailability(item.getId(), null, to, false));
+        Assertions.assertThrows(ValidationException.class, () -> itemService.getAvailability(List.of(), from, to, false));
+    }
+
+    @Test
+    void testGetAvailabilityOfManyItems() {
+        itemService = new ItemServiceImpl(itemRepository, userService, itemMapper, bookingService, commentRepository,
+                commentMapper, itemSearchIndex, transactionRetry, 2, 3);
+        LocalDateTime from = LocalDateTime.of(2030, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2030, 1, 10, 0, 0);
+        Mockito.when(itemRepository.countByIdIn(any())).thenAnswer(invocationOnMock ->
+                (long) invocationOnMock.getArgument(0, Collection.class).size());
+        Mockito.when(bookingService.getBusyWindows(anyList(), any(), any(), anyBoolean())).thenReturn(Map.of());
+
+        Assertions.assertEquals(3, itemService.getAvailability(List.of(1, 2, 3), from, to, false).size());
+        // Размер списка IN ограничен, существование вещей проверяется частями
+        Mockito.verify(itemRepository).countByIdIn(List.of(1, 2));
+        Mockito.verify(itemRepository).countByIdIn(List.of(3));
+
+        // Число вещей в запросе ограничено
+        Assertions.assertThrows(ValidationException.class,
+                () -> itemService.getAvailability(List.of(1, 2, 3, 4), from, to, false));
+    }
 }
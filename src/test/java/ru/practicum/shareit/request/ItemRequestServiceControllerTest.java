@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.practicum.shareit.request.dto.ItemRequestDtoIn;
@@ -104,7 +105,7 @@ public class ItemRequestServiceControllerTest {
 
     @Test
     void testGetAllRequests() throws Exception {
-        when(itemRequestService.getAllRequests(anyInt(), any(), any())).thenReturn(List.of(itemRequestDtoOut, itemRequestDtoOut2));
+        when(itemRequestService.getAllRequests(anyInt(), any(), any())).thenReturn(new SliceImpl<>(List.of(itemRequestDtoOut, itemRequestDtoOut2)));
 
         mvc.perform(get("/requests/all")
                         .header("X-Sharer-User-Id", "1")
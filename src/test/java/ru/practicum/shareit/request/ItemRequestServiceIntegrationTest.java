@@ -8,6 +8,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.exceptions.ValidationException;
+import ru.practicum.shareit.item.ItemService;
+import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.request.dto.ItemRequestDtoIn;
 import ru.practicum.shareit.request.dto.ItemRequestDtoOut;
 import ru.practicum.shareit.request.model.ItemRequest;
@@ -19,11 +21,16 @@ import ru.practicum.shareit.user.dto.UserDto;
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.notNullValue;
+import static ru.practicum.shareit.QueryCountAssertions.assertQueryCount;
+import static ru.practicum.shareit.QueryCountAssertions.queryCount;
+import static ru.practicum.shareit.QueryCountAssertions.resetQueryCount;
+import static ru.practicum.shareit.QueryCountAssertions.assertQueryTime;
 
 @Transactional
 @SpringBootTest(
@@ -34,6 +41,7 @@ public class ItemRequestServiceIntegrationTest {
     private final EntityManager em;
     private final UserService userService;
     private final ItemRequestService itemRequestService;
+    private final ItemService itemService;
 
     UserDto user;
     UserDto user2;
@@ -96,7 +104,7 @@ public class ItemRequestServiceIntegrationTest {
         ItemRequestDtoOut itemRequestDtoOut = itemRequestService.createItemRequest(itemRequestDtoIn, user.getId());
         ItemRequestDtoOut itemRequestDtoOut2 = itemRequestService.createItemRequest(itemRequestDtoIn2, user2.getId());
 
-        List<ItemRequestDtoOut> requests = itemRequestService.getAllRequests(user.getId(), null, null);
+        List<ItemRequestDtoOut> requests = itemRequestService.getAllRequests(user.getId(), null, null).getContent();
 
         assertThat(requests.size(), equalTo(2));
         Assertions.assertEquals(requests.get(0).getId(), itemRequestDtoOut.getId());
@@ -108,18 +116,53 @@ public class ItemRequestServiceIntegrationTest {
         Assertions.assertEquals(requests.get(1).getDescription(), itemRequestDtoOut2.getDescription());
         Assertions.assertEquals(requests.get(1).getCreated(), itemRequestDtoOut2.getCreated());
 
-        requests = itemRequestService.getAllRequests(user.getId(), 0, 1);
+        requests = itemRequestService.getAllRequests(user.getId(), 0, 1).getContent();
         assertThat(requests.size(), equalTo(1));
 
         Assertions.assertThrows(ValidationException.class, () -> itemRequestService.getAllRequests(user.getId(), -1, 1));
         Assertions.assertThrows(ValidationException.class, () -> itemRequestService.getAllRequests(user.getId(), 0, -1));
     }
 
+    @Test
+    void testGetAllRequestsStatementCount() {
+        for (int i = 0; i < 6; i++) {
+            itemRequestDtoIn.setDescription("нужна вещь " + i);
+            ItemRequestDtoOut itemRequestDtoOut = itemRequestService.createItemRequest(itemRequestDtoIn, user2.getId());
+            itemService.createItem(new ItemDto(null, "вещь " + i, "описание", true, itemRequestDtoOut.getId()), user.getId());
+            itemService.createItem(new ItemDto(null, "ещё вещь " + i, "описание", true, itemRequestDtoOut.getId()), user.getId());
+        }
+        em.flush();
+
+        // Количество запросов к базе не зависит от размера страницы
+        List<Long> statementCounts = new ArrayList<>();
+        for (int size : List.of(1, 3, 6)) {
+            em.clear();
+            resetQueryCount();
+            List<ItemRequestDtoOut> requests = itemRequestService.getAllRequests(user.getId(), 0, size).getContent();
+            assertThat(requests.size(), equalTo(size));
+            for (ItemRequestDtoOut request : requests) {
+                assertThat(request.getItems().size(), equalTo(2));
+                Assertions.assertEquals(request.getId(), request.getItems().get(0).getRequestId());
+            }
+            statementCounts.add(queryCount());
+            assertQueryCount(3);
+            assertQueryTime(1000);
+        }
+        assertThat(statementCounts.get(1), equalTo(statementCounts.get(0)));
+        assertThat(statementCounts.get(2), equalTo(statementCounts.get(0)));
+        // Пользователь, страница запросов и вещи к ним - без отдельного запроса count
+        assertThat(statementCounts.get(0), equalTo(3L));
+    }
+
     @Test
     void testGetRequestById() {
         ItemRequestDtoOut itemRequestDtoOut = itemRequestService.createItemRequest(itemRequestDtoIn, user.getId());
+        em.flush();
 
+        resetQueryCount();
         ItemRequestDtoOut request = itemRequestService.getRequestById(user.getId(), itemRequestDtoOut.getId());
+        // Пользователь, запрос и вещи к нему
+        assertQueryCount(3);
 
         Assertions.assertEquals(request.getId(), itemRequestDtoOut.getId());
         Assertions.assertEquals(request.getRequestor(), itemRequestDtoOut.getRequestor());
@@ -10,6 +10,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import ru.practicum.shareit.exceptions.ObjectNotFoundException;
 import ru.practicum.shareit.exceptions.ValidationException;
 import ru.practicum.shareit.item.ItemService;
+import ru.practicum.shareit.item.dto.ItemDto;
 import ru.practicum.shareit.request.dto.ItemRequestDtoIn;
 import ru.practicum.shareit.request.dto.ItemRequestDtoOut;
 import ru.practicum.shareit.request.model.ItemRequest;
@@ -18,10 +19,12 @@ import ru.practicum.shareit.user.dto.UserDto;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 
 @ExtendWith(MockitoExtension.class)
 public class ItemRequestServiceTest {
@@ -40,7 +43,7 @@ public class ItemRequestServiceTest {
     @BeforeEach
     void beforeEach() {
         itemRequestMapper = new ItemRequestMapperImpl();
-        itemRequestService = new ItemRequestServiceImpl(itemRequestRepository, itemRequestMapper, userService, itemService);
+        itemRequestService = new ItemRequestServiceImpl(itemRequestRepository, itemRequestMapper, userService, itemService, 500);
         user = new UserDto();
         user.setId(1);
         user.setName("тестовый пользователь");
@@ -73,31 +76,56 @@ public class ItemRequestServiceTest {
         Mockito.when(userService.getUserById(anyInt())).thenReturn(user);
         Mockito.when(itemRequestRepository.findAllByRequestorIdOrderByCreatedDesc(anyInt())).thenReturn(
                 List.of(itemRequest));
-        Mockito.when(itemService.findByRequestId(anyInt())).thenReturn(null);
+        Mockito.when(itemService.findByRequestIds(anyList())).thenReturn(Map.of());
 
         List<ItemRequestDtoOut> itemRequestDtoOut = itemRequestService.getRequestsByRequestor(user.getId());
 
         Mockito.verify(userService, Mockito.times(1)).getUserById(user.getId());
         Mockito.verify(itemRequestRepository, Mockito.times(1)).findAllByRequestorIdOrderByCreatedDesc(user.getId());
-        Assertions.assertTrue(itemRequestDtoOut.contains(itemRequestMapper.toItemRequestDtoOut(itemRequest)));
+        Assertions.assertTrue(itemRequestDtoOut.contains(expectedDto(itemRequest)));
     }
 
     @Test
     void testGetAllRequests() {
         Mockito.when(userService.getUserById(anyInt())).thenReturn(user);
         Mockito.when(itemRequestRepository.findAll()).thenReturn(List.of(itemRequest));
-        Mockito.when(itemService.findByRequestId(anyInt())).thenReturn(null);
+        Mockito.when(itemService.findByRequestIds(anyList())).thenReturn(Map.of());
 
-        List<ItemRequestDtoOut> itemRequestDtoOuts = itemRequestService.getAllRequests(user.getId(), null, null);
+        List<ItemRequestDtoOut> itemRequestDtoOuts = itemRequestService.getAllRequests(user.getId(), null, null).getContent();
 
         Mockito.verify(userService, Mockito.times(1)).getUserById(user.getId());
         Mockito.verify(itemRequestRepository, Mockito.times(1)).findAll();
-        Mockito.verify(itemService, Mockito.times(1)).findByRequestId(itemRequest.getId());
+        Mockito.verify(itemService, Mockito.times(1)).findByRequestIds(List.of(itemRequest.getId()));
 
-        Assertions.assertTrue(itemRequestDtoOuts.contains(itemRequestMapper.toItemRequestDtoOut(itemRequest)));
+        Assertions.assertTrue(itemRequestDtoOuts.contains(expectedDto(itemRequest)));
 
     }
 
+    @Test
+    void testGetAllRequestsInBatches() {
+        itemRequestService = new ItemRequestServiceImpl(itemRequestRepository, itemRequestMapper, userService, itemService, 2);
+        ItemRequest itemRequest2 = new ItemRequest(2, "второй запрос", itemRequest.getRequestor(), LocalDateTime.now(), null);
+        ItemRequest itemRequest3 = new ItemRequest(3, "третий запрос", itemRequest.getRequestor(), LocalDateTime.now(), null);
+        ItemDto itemDto = new ItemDto(1, "вещь", "описание", true, 3);
+        Mockito.when(userService.getUserById(anyInt())).thenReturn(user);
+        Mockito.when(itemRequestRepository.findAll()).thenReturn(List.of(itemRequest, itemRequest2, itemRequest3));
+        Mockito.when(itemService.findByRequestIds(anyList())).thenAnswer(invocationOnMock -> {
+            List<Integer> requestIds = invocationOnMock.getArgument(0);
+            return requestIds.contains(3) ? Map.of(3, List.of(itemDto)) : Map.of();
+        });
+
+        List<ItemRequestDtoOut> itemRequestDtoOuts = itemRequestService.getAllRequests(user.getId(), null, null).getContent();
+
+        // Идентификаторы запросов передаются пачками не больше заданного размера
+        Mockito.verify(itemService, Mockito.times(1)).findByRequestIds(List.of(1, 2));
+        Mockito.verify(itemService, Mockito.times(1)).findByRequestIds(List.of(3));
+        Mockito.verify(itemService, Mockito.never()).findByRequestId(anyInt());
+
+        Assertions.assertEquals(List.of(), itemRequestDtoOuts.get(0).getItems());
+        Assertions.assertEquals(List.of(), itemRequestDtoOuts.get(1).getItems());
+        Assertions.assertEquals(List.of(itemDto), itemRequestDtoOuts.get(2).getItems());
+    }
+
     @Test
     void testGetRequestById() {
         Mockito.when(userService.getUserById(anyInt())).thenReturn(user);
@@ -109,18 +137,24 @@ public class ItemRequestServiceTest {
                 return Optional.empty();
             }
         });
-        Mockito.when(itemService.findByRequestId(anyInt())).thenReturn(null);
+        Mockito.when(itemService.findByRequestIds(anyList())).thenReturn(Map.of());
 
         ItemRequestDtoOut itemRequestDtoOut = itemRequestService.getRequestById(user.getId(), itemRequest.getId());
 
         Mockito.verify(userService, Mockito.times(1)).getUserById(user.getId());
         Mockito.verify(itemRequestRepository, Mockito.times(1)).findById(user.getId());
 
-        Assertions.assertEquals(itemRequestMapper.toItemRequestDtoOut(itemRequest), itemRequestDtoOut);
+        Assertions.assertEquals(expectedDto(itemRequest), itemRequestDtoOut);
 
         // Пробуем получить несуществующее бронирование
         Assertions.assertThrows(ObjectNotFoundException.class,
                 () -> itemRequestService.getRequestById(user.getId(), itemRequest.getId() + 1000));
 
     }
+
+    private ItemRequestDtoOut expectedDto(ItemRequest itemRequest) {
+        ItemRequestDtoOut itemRequestDtoOut = itemRequestMapper.toItemRequestDtoOut(itemRequest);
+        itemRequestDtoOut.setItems(List.of());
+        return itemRequestDtoOut;
+    }
 }
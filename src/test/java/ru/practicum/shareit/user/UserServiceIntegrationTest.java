@@ -16,6 +16,8 @@ import java.util.Collection;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static ru.practicum.shareit.QueryCountAssertions.assertQueryCount;
+import static ru.practicum.shareit.QueryCountAssertions.resetQueryCount;
 
 @Transactional
 @SpringBootTest(
@@ -40,13 +42,31 @@ public class UserServiceIntegrationTest {
 
     }
 
+    @Test
+    void testInsertsAreBatched() {
+        resetQueryCount();
+        for (int i = 0; i < 10; i++) {
+            User user = new User();
+            user.setName("пользователь " + i);
+            user.setEmail("batch" + i + "@yandex.ru");
+            em.persist(user);
+        }
+        em.flush();
+        // id выделяются блоком из последовательности, вставки уходят одним пакетом
+        assertQueryCount(3);
+    }
+
     @Test
     void testGetUserById() {
         UserDto user = new UserDto();
         user.setName("тестовый пользователь");
         user.setEmail("test@yandex.ru");
         UserDto userFromDB1 = userService.createUser(user);
+        em.flush();
+        em.clear();
+        resetQueryCount();
         UserDto userFromDB2 = userService.getUserById(userFromDB1.getId());
+        assertQueryCount(1);
 
         TypedQuery<User> query = em.createQuery("Select u from User u where u.id = :id", User.class);
         User userFromDB = query.setParameter("id", userFromDB1.getId()).getSingleResult();
@@ -83,8 +103,11 @@ public class UserServiceIntegrationTest {
         user2.setName("www");
         user2.setEmail("www@yandex.ru");
         user2 = userService.createUser(user2);
+        em.flush();
 
+        resetQueryCount();
         Collection<UserDto> users = userService.getAllUsers();
+        assertQueryCount(1);
         Assertions.assertEquals(2, users.size());
         Assertions.assertTrue(users.contains(user));
         Assertions.assertTrue(users.contains(user2));
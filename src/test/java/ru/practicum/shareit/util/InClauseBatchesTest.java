@@ -0,0 +1,17 @@
+package ru.practicum.shareit.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class InClauseBatchesTest {
+
+    @Test
+    void testPartition() {
+        Assertions.assertEquals(List.of(List.of(1, 2), List.of(3, 4), List.of(5)),
+                InClauseBatches.partition(List.of(1, 2, 3, 4, 5), 2));
+        Assertions.assertEquals(List.of(List.of(1, 2)), InClauseBatches.partition(List.of(1, 2), 2));
+        Assertions.assertEquals(List.of(), InClauseBatches.partition(List.<Integer>of(), 2));
+    }
+}